@@ -0,0 +1,119 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Handles on the engine's methods. The engine lives in the unnamed package,
+ * which JMH won't generate benchmarks in and a named package can't import,
+ * so the benchmarks call it through these. Each handle takes and returns
+ * engine objects as Object; held in static finals they inline like direct
+ * calls.
+ */
+final class Engine {
+    static final Class<?> POSITION = type("Position");
+    static final Class<?> NNUE = type("Nnue");
+    static final Class<?> ACCUMULATOR = type("Nnue$Accumulator");
+    static final Class<?> KERNELS = type("NnueKernels");
+
+    // Position
+    static final MethodHandle FROM_FEN = find("Position", "fromFen", POSITION, String.class);
+    static final MethodHandle SIDE_TO_MOVE = virtual("Position", "sideToMove", int.class);
+    static final MethodHandle IS_IN_CHECK = virtual("Position", "isInCheck", boolean.class, int.class);
+    static final MethodHandle MAKE_MOVE = virtual("Position", "makeMove", void.class, int.class);
+    static final MethodHandle UNMAKE_MOVE = virtual("Position", "unmakeMove", void.class, int.class);
+
+    // MoveGenerator
+    static final MethodHandle GENERATE_PSEUDO_LEGAL = find("MoveGenerator", "generatePseudoLegal", int.class, POSITION, int[].class);
+    static final MethodHandle GENERATE_LEGAL = find("MoveGenerator", "generateLegal", int.class, POSITION, int[].class);
+    static final MethodHandle HAS_LEGAL_MOVE = find("MoveGenerator", "hasLegalMove", boolean.class, POSITION, int[].class);
+
+    // Perft
+    static final MethodHandle NEW_PERFT = constructor("Perft");
+    static final MethodHandle PERFT = virtual("Perft", "perft", long.class, POSITION, int.class);
+
+    // Evaluation and the network
+    static final MethodHandle HANDCRAFTED = find("Evaluation", "handcrafted", int.class, POSITION);
+    static final MethodHandle RANDOM_NETWORK = find("Nnue", "random", NNUE, int.class, int.class, long.class, KERNELS);
+    static final MethodHandle BEST_KERNELS = find("NnueKernels", "best", KERNELS);
+    static final MethodHandle SCALAR_KERNELS = constructor("ScalarKernels");
+    static final MethodHandle NEW_ACCUMULATOR = constructor("Nnue$Accumulator", NNUE);
+    static final MethodHandle NNUE_EVALUATE = virtual("Nnue", "evaluate", int.class, POSITION);
+    static final MethodHandle NNUE_FROM_SCRATCH = virtual("Nnue", "evaluateFromScratch", int.class, POSITION, ACCUMULATOR);
+
+    private Engine() {
+    }
+
+    static String[] benchPositions() {
+        try {
+            return ((String[]) lookup(type("Bench")).findStaticGetter(type("Bench"), "POSITIONS", String[].class)
+                    .invokeExact()).clone();
+        } catch (Throwable e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    static Object[] load(String[] fens) throws Throwable {
+        Object[] positions = new Object[fens.length];
+        for (int i = 0; i < fens.length; i++) {
+            positions[i] = (Object) FROM_FEN.invokeExact(fens[i]);
+        }
+        return positions;
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Package-private members too: the benchmarks share the engine's unnamed module
+    private static MethodHandles.Lookup lookup(Class<?> owner) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+    }
+
+    private static MethodHandle find(String owner, String name, Class<?> returnType, Class<?>... parameters) {
+        Class<?> type = type(owner);
+        try {
+            return erase(lookup(type).findStatic(type, name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Takes the receiver first
+    private static MethodHandle virtual(String owner, String name, Class<?> returnType, Class<?>... parameters) {
+        Class<?> type = type(owner);
+        try {
+            return erase(lookup(type).findVirtual(type, name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle constructor(String owner, Class<?>... parameters) {
+        Class<?> type = type(owner);
+        try {
+            return erase(lookup(type).findConstructor(type, MethodType.methodType(void.class, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Engine classes become Object; primitives, arrays and JDK types are kept
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isEngineType(type.parameterType(i))) type = type.changeParameterType(i, Object.class);
+        }
+        if (isEngineType(type.returnType())) type = type.changeReturnType(Object.class);
+        return handle.asType(type);
+    }
+
+    private static boolean isEngineType(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+}
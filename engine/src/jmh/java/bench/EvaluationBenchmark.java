@@ -0,0 +1,92 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Evaluations per second of every position one legal move from the bench
+ * positions: the hand-written evaluation, the network with its incremental
+ * accumulator, and the network recomputed from all pieces. The network has
+ * untrained weights of the usual size; kernels are the Vector API ones
+ * ("best") or the plain loops.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class EvaluationBenchmark {
+    private static final int BENCH_MOVES = 20 + 48 + 14 + 6 + 44 + 46;
+
+    @Param({"best", "scalar"})
+    public String kernels;
+
+    private final int[] moves = new int[256];
+    private Object[] positions;
+    private Object network;
+    private Object scratch;
+
+    @Setup
+    public void setUp() throws Throwable {
+        positions = Engine.load(Engine.benchPositions());
+        Object chosen = kernels.equals("scalar")
+                ? (Object) Engine.SCALAR_KERNELS.invokeExact()
+                : (Object) Engine.BEST_KERNELS.invokeExact();
+        network = (Object) Engine.RANDOM_NETWORK.invokeExact(256, 32, 1L, chosen);
+        scratch = (Object) Engine.NEW_ACCUMULATOR.invokeExact(network);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BENCH_MOVES)
+    public void handcrafted(Blackhole bh) throws Throwable {
+        for (Object pos : positions) {
+            int count = (int) Engine.GENERATE_LEGAL.invokeExact(pos, moves);
+            for (int i = 0; i < count; i++) {
+                Engine.MAKE_MOVE.invokeExact(pos, moves[i]);
+                bh.consume((int) Engine.HANDCRAFTED.invokeExact(pos));
+                Engine.UNMAKE_MOVE.invokeExact(pos, moves[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BENCH_MOVES)
+    public void nnue(Blackhole bh) throws Throwable {
+        for (Object pos : positions) {
+            int count = (int) Engine.GENERATE_LEGAL.invokeExact(pos, moves);
+            for (int i = 0; i < count; i++) {
+                Engine.MAKE_MOVE.invokeExact(pos, moves[i]);
+                bh.consume((int) Engine.NNUE_EVALUATE.invokeExact(network, pos));
+                Engine.UNMAKE_MOVE.invokeExact(pos, moves[i]);
+            }
+        }
+    }
+
+    // Every evaluation recomputed from all pieces, to show what the incremental updates save
+    @Benchmark
+    @OperationsPerInvocation(BENCH_MOVES)
+    public void nnueRefresh(Blackhole bh) throws Throwable {
+        for (Object pos : positions) {
+            int count = (int) Engine.GENERATE_LEGAL.invokeExact(pos, moves);
+            for (int i = 0; i < count; i++) {
+                Engine.MAKE_MOVE.invokeExact(pos, moves[i]);
+                bh.consume((int) Engine.NNUE_FROM_SCRATCH.invokeExact(network, pos, scratch));
+                Engine.UNMAKE_MOVE.invokeExact(pos, moves[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Move generation, check and mate detection on the six perft positions and
+ * six positions with the side to move in check. Scores are per position (per
+ * move for makeUnmake, per leaf for perft); run with -prof gc for the
+ * allocation rate, which should be zero.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RulesBenchmark {
+    private static final String[] CHECKS = {
+            "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3",
+            "6k1/5ppp/8/8/8/8/5PPP/3r2K1 w - - 0 1",
+            "r1bqkb1r/pppp1Qpp/2n2n2/4p3/2B1P3/8/PPPP1PPP/RNB1K1NR b KQkq - 0 4",
+            "4k3/8/8/8/8/8/4q3/4K3 w - - 0 1",
+            "rnbqk2r/pppp1ppp/5n2/4p3/1b2P3/3P4/PPP2PPP/RNBQKBNR w KQkq - 1 3",
+            "4k3/8/5N2/8/8/8/8/4RK2 b - - 0 1",
+    };
+    // Legal moves summed over the six bench positions
+    private static final int BENCH_MOVES = 20 + 48 + 14 + 6 + 44 + 46;
+    private static final int KIWIPETE_D3 = 97862;
+
+    private final int[] moves = new int[256];
+    private Object[] positions;
+    private Object[] checks;
+    private Object perft;
+
+    @Setup
+    public void setUp() throws Throwable {
+        positions = Engine.load(Engine.benchPositions());
+        checks = Engine.load(CHECKS);
+        perft = (Object) Engine.NEW_PERFT.invokeExact();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public void pseudoLegal(Blackhole bh) throws Throwable {
+        for (Object pos : positions) {
+            bh.consume((int) Engine.GENERATE_PSEUDO_LEGAL.invokeExact(pos, moves));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public void legal(Blackhole bh) throws Throwable {
+        for (Object pos : positions) {
+            bh.consume((int) Engine.GENERATE_LEGAL.invokeExact(pos, moves));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public void isInCheck(Blackhole bh) throws Throwable {
+        for (Object pos : checks) {
+            bh.consume((boolean) Engine.IS_IN_CHECK.invokeExact(pos, (int) Engine.SIDE_TO_MOVE.invokeExact(pos)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public void hasLegalMove(Blackhole bh) throws Throwable {
+        for (Object pos : checks) {
+            bh.consume((boolean) Engine.HAS_LEGAL_MOVE.invokeExact(pos, moves));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BENCH_MOVES)
+    public void makeUnmake(Blackhole bh) throws Throwable {
+        for (Object pos : positions) {
+            int count = (int) Engine.GENERATE_LEGAL.invokeExact(pos, moves);
+            for (int i = 0; i < count; i++) {
+                Engine.MAKE_MOVE.invokeExact(pos, moves[i]);
+                Engine.UNMAKE_MOVE.invokeExact(pos, moves[i]);
+            }
+            bh.consume(count);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KIWIPETE_D3)
+    public long perftKiwipete() throws Throwable {
+        return (long) Engine.PERFT.invokeExact(perft, positions[1], 3);
+    }
+}
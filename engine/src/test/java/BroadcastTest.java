@@ -0,0 +1,177 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Spectator readers over loopback sockets with small buffers, so the sockets fill up. */
+class BroadcastTest {
+    private static final int BUFFER_BYTES = 4096;
+    // A RESIGN event on the wire
+    private static final int EVENT_BYTES = 8;
+
+    private final Broadcast broadcast = new Broadcast();
+    private final List<SocketChannel> channels = new ArrayList<>();
+    private ServerSocketChannel listener;
+    private int published;
+
+    // A non-blocking sender for the reader, and the receiving end as a spectator would read it
+    private final class Link {
+        final SocketChannel sender;
+        final SocketChannel receiver;
+        final Broadcast.Reader reader = broadcast.reader();
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private final ByteBuffer scratch = ByteBuffer.allocate(64 * 1024);
+
+        Link() throws IOException {
+            sender = SocketChannel.open();
+            sender.setOption(StandardSocketOptions.SO_SNDBUF, BUFFER_BYTES);
+            sender.connect(listener.getLocalAddress());
+            sender.configureBlocking(false);
+            receiver = listener.accept();
+            receiver.configureBlocking(false);
+            channels.add(sender);
+            channels.add(receiver);
+        }
+
+        boolean write() throws IOException {
+            return reader.write(sender);
+        }
+
+        void drain() throws IOException {
+            int read;
+            while ((read = receiver.read(scratch.clear())) > 0) {
+                received.write(scratch.array(), 0, read);
+            }
+        }
+
+        // Writes and drains until everything published has arrived
+        List<int[]> catchUp() throws Exception {
+            boolean done = false;
+            for (int i = 0; i < 10_000; i++) {
+                drain();
+                if (!done) done = write();
+                List<int[]> frames = frames();
+                if (done && !frames.isEmpty() && frames.get(frames.size() - 1)[1] == published) return frames;
+                if (done) Thread.sleep(1);
+            }
+            throw new AssertionError("feed never caught up");
+        }
+
+        // Every frame received as {type, sequence}; fails on a torn or unexpected frame
+        List<int[]> frames() {
+            ByteBuffer bytes = ByteBuffer.wrap(received.toByteArray());
+            List<int[]> frames = new ArrayList<>();
+            while (bytes.remaining() >= 2) {
+                int length = bytes.getShort(bytes.position()) & 0xFFFF;
+                if (bytes.remaining() < 2 + length) break;
+                int offset = bytes.position() + 2;
+                int type = Protocol.type(bytes, offset);
+                assertTrue(type == Protocol.POSITION || type == Protocol.RESIGN || type == Protocol.NEW_GAME,
+                        "frame type " + type);
+                frames.add(new int[]{type, Protocol.sequence(bytes, offset)});
+                bytes.position(offset + length);
+            }
+            return frames;
+        }
+    }
+
+    @BeforeEach
+    void listen() throws IOException {
+        listener = ServerSocketChannel.open();
+        listener.setOption(StandardSocketOptions.SO_RCVBUF, BUFFER_BYTES);
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        for (SocketChannel channel : channels) {
+            channel.close();
+        }
+        listener.close();
+    }
+
+    private void publish(int events) {
+        for (int i = 0; i < events; i++) {
+            broadcast.publish(Protocol.RESIGN, ++published & 1);
+        }
+    }
+
+    // Asserts sequences run on by one from the frame at index from, to index to (exclusive)
+    private static void assertContiguous(List<int[]> frames, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            assertTrue(frames.get(i)[0] != Protocol.POSITION);
+            assertEquals(frames.get(i - 1)[1] + 1, frames.get(i)[1]);
+        }
+    }
+
+    @Test
+    void fastReaderSeesEveryEventAcrossSegments() throws Exception {
+        publish(10);
+        Link link = new Link();
+        // A few events at a time, read as they come: the reader keeps meeting the live end
+        int segmentEvents = Broadcast.SEGMENT_BYTES / EVENT_BYTES;
+        while (published < 3 * segmentEvents) {
+            publish(7);
+            link.catchUp();
+        }
+        List<int[]> frames = link.frames();
+        assertEquals(Protocol.POSITION, frames.get(0)[0]);
+        assertEquals(10, frames.get(0)[1]);
+        assertContiguous(frames, 0, frames.size());
+        assertEquals(published - 10 + 1, frames.size());
+    }
+
+    // Two slow readers: whole frames, a shared POSITION where they skip, then the live end in order
+    @Test
+    void slowReadersSkipToTheSamePosition() throws Exception {
+        publish(100);
+        Link first = new Link();
+        Link second = new Link();
+        // A 7-byte frame, so that the 8-byte ones after it don't line up with where the sockets cut
+        broadcast.publish(Protocol.NEW_GAME, 0);
+        published++;
+        // One large write each, which the full sockets cut wherever they happen to fill
+        publish(2 * Broadcast.SEGMENT_BYTES / EVENT_BYTES);
+        assertFalse(first.write());
+        assertFalse(second.write());
+        // Then fall more than the allowed lag behind
+        publish(Broadcast.MAX_LAG_BYTES / EVENT_BYTES + 1);
+        int skippedAt = published;
+
+        List<int[]> firstFrames = first.catchUp();
+        List<int[]> secondFrames = second.catchUp();
+        int[] firstSkip = skip(firstFrames);
+        int[] secondSkip = skip(secondFrames);
+        assertEquals(skippedAt, firstSkip[1]);
+        assertEquals(skippedAt, secondSkip[1]);
+        assertEquals(firstFrames.size(), firstSkip[0] + 1);
+        publish(50);
+        firstFrames = first.catchUp();
+        assertContiguous(firstFrames, firstSkip[0], firstFrames.size());
+    }
+
+    // The second POSITION frame as {index, sequence}, after checking what comes before it
+    private static int[] skip(List<int[]> frames) {
+        assertEquals(Protocol.POSITION, frames.get(0)[0]);
+        assertEquals(100, frames.get(0)[1]);
+        int index = 1;
+        while (frames.get(index)[0] != Protocol.POSITION) index++;
+        assertContiguous(frames, 0, index);
+        assertTrue(frames.get(index)[1] >= frames.get(index - 1)[1]);
+        return new int[]{index, frames.get(index)[1]};
+    }
+}
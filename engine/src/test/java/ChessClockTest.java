@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ChessClockTest {
+    private static final long MS = 1_000_000L;
+
+    // Time only moves when a test says so
+    private long now = 1_000 * MS;
+
+    private ChessClock clock(long baseMillis, long incrementMillis, TimeControl.Increment increment) {
+        ChessClock clock = new ChessClock(new TimeControl(baseMillis, incrementMillis, increment), () -> now);
+        clock.start(Piece.WHITE);
+        return clock;
+    }
+
+    @Test
+    void fischerAddsTheIncrementAfterEveryMove() {
+        ChessClock clock = clock(60_000, 2_000, TimeControl.Increment.FISCHER);
+        now += 5_000 * MS;
+        assertTrue(clock.press());
+        assertEquals(57_000, clock.remainingMillis(Piece.WHITE));
+        assertEquals(Piece.BLACK, clock.running());
+        // A quick move gains time
+        now += 500 * MS;
+        assertTrue(clock.press());
+        assertEquals(61_500, clock.remainingMillis(Piece.BLACK));
+    }
+
+    @Test
+    void bronsteinGivesBackAtMostTheTimeUsed() {
+        ChessClock clock = clock(60_000, 3_000, TimeControl.Increment.BRONSTEIN);
+        now += 1_000 * MS;
+        assertTrue(clock.press());
+        assertEquals(60_000, clock.remainingMillis(Piece.WHITE));
+        now += 10_000 * MS;
+        assertTrue(clock.press());
+        assertEquals(53_000, clock.remainingMillis(Piece.BLACK));
+    }
+
+    @Test
+    void noIncrementChargesExactlyTheTimeUsed() {
+        ChessClock clock = clock(60_000, 0, TimeControl.Increment.NONE);
+        now += 1_234_567;
+        assertTrue(clock.press());
+        assertEquals(60_000 * MS - 1_234_567, clock.remainingNanos(Piece.WHITE));
+    }
+
+    @Test
+    void flagFallsAtTheDeadlineAndPressFails() {
+        ChessClock clock = clock(10_000, 5_000, TimeControl.Increment.FISCHER);
+        assertEquals(now + 10_000 * MS, clock.deadlineNanos());
+        now += 9_999 * MS;
+        assertFalse(clock.flagFallen());
+        now += MS;
+        assertTrue(clock.flagFallen());
+        // No increment rescues a move made after the flag
+        assertFalse(clock.press());
+        assertEquals(ChessClock.STOPPED, clock.running());
+        assertEquals(0, clock.remainingMillis(Piece.WHITE));
+    }
+
+    @Test
+    void runningSideIsChargedWhileThinking() {
+        ChessClock clock = clock(60_000, 0, TimeControl.Increment.NONE);
+        now += 15_000 * MS;
+        assertEquals(45_000, clock.remainingMillis(Piece.WHITE));
+        assertEquals(60_000, clock.remainingMillis(Piece.BLACK));
+        clock.stop();
+        now += 15_000 * MS;
+        assertEquals(45_000, clock.remainingMillis(Piece.WHITE));
+    }
+}
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class GameLogTest {
+    // Replayed events as {sequence, type, data}
+    private static List<int[]> replay(GameLog log, int afterSequence) {
+        List<int[]> events = new ArrayList<>();
+        log.replay(afterSequence, (sequence, type, data) -> events.add(new int[]{sequence, type, data}));
+        return events;
+    }
+
+    @Test
+    void replaysOnlyWhatThePeerMissed() {
+        GameLog log = new GameLog();
+        assertEquals(1, log.append(Protocol.MOVE, 0x0C1C));
+        assertEquals(2, log.append(Protocol.MOVE, 0x0934));
+        assertEquals(3, log.append(Protocol.RESIGN, Piece.WHITE));
+        List<int[]> missed = replay(log, 1);
+        assertEquals(2, missed.size());
+        assertEquals(2, missed.get(0)[0]);
+        assertEquals(0x0934, missed.get(0)[2]);
+        assertEquals(Protocol.RESIGN, missed.get(1)[1]);
+        assertEquals(Piece.WHITE, missed.get(1)[2]);
+        assertTrue(replay(log, 3).isEmpty());
+        // A peer claiming to be ahead gets nothing
+        assertTrue(replay(log, 10).isEmpty());
+    }
+
+    @Test
+    void newGameCutsTheLogAndLeadsTheReplay() {
+        GameLog log = new GameLog();
+        log.append(Protocol.MOVE, 1);
+        log.append(Protocol.RESULT, GameLog.result(Game.Status.CHECKMATE, Piece.BLACK));
+        int newGame = log.append(Protocol.NEW_GAME, 0);
+        log.append(Protocol.MOVE, 2);
+        // Behind the NEW_GAME: the whole current game, marker first
+        List<int[]> events = replay(log, 1);
+        assertEquals(2, events.size());
+        assertEquals(newGame, events.get(0)[0]);
+        assertEquals(Protocol.NEW_GAME, events.get(0)[1]);
+        assertEquals(4, events.get(1)[0]);
+    }
+
+    @Test
+    void resultsPackStatusAndWinner() {
+        for (Game.Status status : Game.Status.values()) {
+            for (int winner : new int[]{Piece.WHITE, Piece.BLACK, Game.NO_WINNER}) {
+                int packed = GameLog.result(status, winner);
+                assertEquals(status, GameLog.status(packed));
+                assertEquals(winner, GameLog.winner(packed));
+            }
+        }
+    }
+
+    @Test
+    void onlyTheNextEventFollowsExceptANewGame() {
+        assertTrue(GameLog.follows(6, Protocol.MOVE, 5));
+        assertFalse(GameLog.follows(5, Protocol.MOVE, 5));
+        assertFalse(GameLog.follows(7, Protocol.MOVE, 5));
+        assertTrue(GameLog.follows(9, Protocol.NEW_GAME, 5));
+        assertFalse(GameLog.follows(5, Protocol.NEW_GAME, 5));
+    }
+
+    // A receiver that drops out mid-game and is caught up from the sender's log ends on the same position
+    @Test
+    void resumedGameReachesTheSendersPosition() {
+        Game sender = new Game();
+        Game receiver = new Game();
+        GameLog log = new GameLog();
+        int[] lastReceived = {0};
+        GameLog.Sink deliver = (sequence, type, data) -> {
+            if (!GameLog.follows(sequence, type, lastReceived[0])) return;
+            lastReceived[0] = sequence;
+            if (type == Protocol.MOVE) assertTrue(receiver.applyMove(Protocol.resolve(receiver, data)));
+        };
+        String[] moves = {"e2e4", "e7e5", "g1f3", "b8c6", "f1b5", "a7a6", "b5a4", "g8f6", "e1g1"};
+        for (int i = 0; i < moves.length; i++) {
+            int move = sender.findMove(square(moves[i], 0), square(moves[i], 2));
+            assertTrue(sender.applyMove(move));
+            int sequence = log.append(Protocol.MOVE, Protocol.wireMove(move));
+            // The link drops after the fourth move; later events are lost in transit
+            if (i < 4) deliver.event(sequence, Protocol.MOVE, Protocol.wireMove(move));
+        }
+        // A replayed duplicate is ignored, then everything after lastReceived arrives
+        deliver.event(2, Protocol.MOVE, 0);
+        log.replay(lastReceived[0], deliver);
+        assertEquals(log.lastSequence(), lastReceived[0]);
+        assertEquals(sender.position().toFen(), receiver.position().toFen());
+    }
+
+    private static int square(String uci, int at) {
+        return Bitboards.parseSquare(uci.substring(at, at + 2));
+    }
+}
@@ -0,0 +1,190 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** The selector server over loopback: pairing, move relay and resuming a seat. */
+class GameServerTest {
+    private final GameServer server = new GameServer(0, 2);
+    // The game as the clients play it, to encode their moves
+    private final Position position = Position.startPosition();
+
+    // One client, speaking the protocol by hand
+    private final class Client implements AutoCloseable {
+        final Socket socket;
+        final DataInputStream in;
+        final long token;
+        private final ByteBuffer out = ByteBuffer.allocate(Protocol.MAX_FRAME);
+
+        Client(long offeredToken, int lastSequence) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+            socket.setSoTimeout(5000);
+            in = new DataInputStream(socket.getInputStream());
+            Protocol.putHello(out, offeredToken, lastSequence);
+            flush();
+            ByteBuffer hello = next();
+            assertEquals(Protocol.HELLO, Protocol.type(hello, 0));
+            token = Protocol.helloToken(hello, 0);
+        }
+
+        private void flush() throws IOException {
+            socket.getOutputStream().write(out.array(), 0, out.position());
+            out.clear();
+        }
+
+        // The next frame, type at 0; the server's pings are answered on the way
+        ByteBuffer next() throws IOException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (System.nanoTime() < deadline) {
+                byte[] frame = new byte[in.readUnsignedShort()];
+                in.readFully(frame);
+                ByteBuffer buffer = ByteBuffer.wrap(frame);
+                if (Protocol.type(buffer, 0) != Protocol.PING) return buffer;
+                Protocol.putPong(out, buffer, 0);
+                flush();
+            }
+            throw new SocketTimeoutException("only pings for 5 s");
+        }
+
+        // Skips game frames until the server pings, and answers it
+        void awaitPing() throws IOException {
+            while (true) {
+                byte[] frame = new byte[in.readUnsignedShort()];
+                in.readFully(frame);
+                ByteBuffer buffer = ByteBuffer.wrap(frame);
+                if (Protocol.type(buffer, 0) == Protocol.PING) {
+                    Protocol.putPong(out, buffer, 0);
+                    flush();
+                    return;
+                }
+            }
+        }
+
+        ByteBuffer next(int type) throws IOException {
+            ByteBuffer frame = next();
+            assertEquals(type, Protocol.type(frame, 0));
+            return frame;
+        }
+
+        void move(int sequence, String uci) throws IOException {
+            Protocol.putMove(out, sequence, Uci.parseMove(position, uci));
+            flush();
+        }
+
+        // Returns once the server has handled everything sent before, since it answers in order
+        void sync() throws IOException {
+            Protocol.putPing(out, System.nanoTime());
+            flush();
+            next(Protocol.PONG);
+        }
+
+        void illegalMove(int sequence, int from, int to) throws IOException {
+            Protocol.putMove(out, sequence, Move.make(from, to, 0));
+            flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @BeforeEach
+    void start() throws IOException {
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    // Two fresh players, as {White, Black}: the HELLO is answered before joining the lobby, so who waits is a race
+    private Client[] pair() throws IOException {
+        Client first = new Client(0, 0);
+        Client second = new Client(0, 0);
+        int firstColor = Protocol.color(first.next(Protocol.COLOR), 0);
+        assertEquals(firstColor ^ 1, Protocol.color(second.next(Protocol.COLOR), 0));
+        Client[] players = firstColor == Piece.WHITE ? new Client[]{first, second} : new Client[]{second, first};
+        // Each side's events are numbered from 1
+        for (Client player : players) {
+            assertNotEquals(0, player.token);
+            assertEquals(1, Protocol.sequence(player.next(Protocol.NEW_GAME), 0));
+        }
+        return players;
+    }
+
+    private void play(String uci) {
+        position.makeMove(Uci.parseMove(position, uci));
+    }
+
+    // The MOVE event that should come next, as {sequence, wire move}
+    private static void assertMove(ByteBuffer frame, int sequence, int wireMove) {
+        assertEquals(Protocol.MOVE, Protocol.type(frame, 0));
+        assertEquals(sequence, Protocol.sequence(frame, 0));
+        assertEquals(wireMove, Protocol.move(frame, 0));
+    }
+
+    @Test
+    void pairsRelaysLegalMovesAndDropsIllegalOnes() throws IOException {
+        Client[] players = pair();
+        try (Client white = players[Piece.WHITE]; Client black = players[Piece.BLACK]) {
+            int e4 = Protocol.wireMove(Uci.parseMove(position, "e2e4"));
+            white.move(1, "e2e4");
+            play("e2e4");
+            assertMove(black.next(), 2, e4);
+
+            // Not a legal move: taken as Black's first event, but never relayed
+            black.illegalMove(1, Bitboards.parseSquare("e7"), Bitboards.parseSquare("e4"));
+            int e5 = Protocol.wireMove(Uci.parseMove(position, "e7e5"));
+            black.move(2, "e7e5");
+            assertMove(white.next(), 2, e5);
+        }
+    }
+
+    @Test
+    void redialWithTheTokenReplaysMissedEventsAndTheClocks() throws IOException {
+        Client[] players = pair();
+        Client white = players[Piece.WHITE];
+        try (Client black = players[Piece.BLACK]) {
+            white.move(1, "d2d4");
+            play("d2d4");
+            black.next(Protocol.MOVE);
+
+            // White's link drops; Black's reply is logged for White meanwhile
+            white.close();
+            int d5 = Protocol.wireMove(Uci.parseMove(position, "d7d5"));
+            black.move(1, "d7d5");
+            black.sync();
+
+            try (Client back = new Client(white.token, 1)) {
+                assertEquals(white.token, back.token);
+                assertMove(back.next(), 2, d5);
+                ByteBuffer clock = back.next(Protocol.CLOCK);
+                long whiteMillis = Protocol.clockMillis(clock, 0, Piece.WHITE);
+                assertTrue(whiteMillis > 0 && whiteMillis <= TimeControl.DEFAULT.baseMillis());
+            }
+        }
+    }
+
+    // The server measures each player's lag itself, once per heartbeat
+    @Test
+    void serverPingsItsPlayers() throws IOException {
+        Client[] players = pair();
+        try (Client white = players[Piece.WHITE]; Client black = players[Piece.BLACK]) {
+            white.awaitPing();
+            black.awaitPing();
+        }
+    }
+}
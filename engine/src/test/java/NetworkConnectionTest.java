@@ -0,0 +1,44 @@
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class NetworkConnectionTest {
+    // Accepts on an ephemeral port; serve is called by the test
+    private static final class Acceptor extends NetworkConnection {
+        Acceptor() {
+            super((frame, offset, length) -> { });
+        }
+
+        @Override
+        protected Socket createSocket() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected boolean isAccepting() {
+            return true;
+        }
+    }
+
+    @Test
+    void silentPeerIsDroppedBeforeTheHandshake() throws Exception {
+        Acceptor acceptor = new Acceptor();
+        acceptor.setHeartbeat(50, 200);
+        try (ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket peer = new Socket(listener.getInetAddress(), listener.getLocalPort());
+             Socket socket = listener.accept()) {
+            // Connected, but it never sends HELLO
+            assertTrue(peer.isConnected());
+            assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> assertThrows(SocketTimeoutException.class, () -> acceptor.serve(socket)));
+        }
+    }
+}
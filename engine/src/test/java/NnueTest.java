@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+/** The network over random games: incremental against from-scratch, and the two kernels against each other. */
+class NnueTest {
+    private static final int GAMES = 40;
+    private static final int PLIES = 80;
+
+    private final Nnue simd = Nnue.random(256, 32, 1, NnueKernels.best());
+    private final Nnue scalar = simd.withKernels(new ScalarKernels());
+
+    // Calls check once per position of GAMES random games, taking back every move at the end
+    private static void playRandomGames(Consumer<Position> check) {
+        Random random = new Random(11);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int game = 0; game < GAMES; game++) {
+            Position pos = Position.startPosition();
+            int[] played = new int[PLIES];
+            int ply = 0;
+            check.accept(pos);
+            while (ply < PLIES) {
+                int count = MoveGenerator.generateLegal(pos, moves);
+                if (count == 0) break;
+                played[ply] = moves[random.nextInt(count)];
+                pos.makeMove(played[ply++]);
+                check.accept(pos);
+            }
+            while (ply > 0) {
+                pos.unmakeMove(played[--ply]);
+                check.accept(pos);
+            }
+        }
+    }
+
+    // The accumulator only adds and subtracts shorts, so it never drifts from a refresh
+    @Test
+    void incrementalMatchesFromScratch() {
+        for (Nnue network : new Nnue[]{simd, scalar}) {
+            Nnue.Accumulator scratch = new Nnue.Accumulator(network);
+            playRandomGames(pos ->
+                    assertEquals(network.evaluateFromScratch(pos, scratch), network.evaluate(pos), pos.toFen()));
+        }
+    }
+
+    @Test
+    void kernelsAgreeUpToRounding() {
+        assertFalse(simd.kernels instanceof ScalarKernels, "run with --add-modules jdk.incubator.vector");
+        Nnue.Accumulator simdScratch = new Nnue.Accumulator(simd);
+        Nnue.Accumulator scalarScratch = new Nnue.Accumulator(scalar);
+        int[] worst = {0};
+        playRandomGames(pos -> {
+            int difference = simd.evaluateFromScratch(pos, simdScratch) - scalar.evaluateFromScratch(pos, scalarScratch);
+            worst[0] = Math.max(worst[0], Math.abs(difference));
+        });
+        assertTrue(worst[0] <= 1, "scores differ by " + worst[0]);
+    }
+
+    @Test
+    void kernelsAgreeOnTheFirstLayer() {
+        Random random = new Random(5);
+        // Not a multiple of any vector width, so the tails are covered too
+        short[] weights = new short[3 * 263];
+        for (int i = 0; i < weights.length; i++) weights[i] = (short) random.nextInt();
+        short[] a = new short[263], b = new short[263];
+        NnueKernels vector = NnueKernels.best(), plain = new ScalarKernels();
+        for (int offset = 0; offset < weights.length; offset += 263) {
+            vector.add(a, weights, offset);
+            plain.add(b, weights, offset);
+        }
+        vector.subtract(a, weights, 263);
+        plain.subtract(b, weights, 263);
+        assertEquals(Arrays.toString(b), Arrays.toString(a));
+        float[] x = new float[263], y = new float[263];
+        vector.activate(a, x, 0);
+        plain.activate(b, y, 0);
+        for (int i = 0; i < x.length; i++) {
+            assertEquals(Float.floatToIntBits(y[i]), Float.floatToIntBits(x[i]));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OpeningBookTest {
+    private static Position play(String... moves) {
+        Position position = Position.startPosition();
+        for (String move : moves) {
+            position.makeMove(Uci.parseMove(position, move));
+        }
+        return position;
+    }
+
+    // The keys published with the Polyglot book format
+    @Test
+    void keysMatchThePublishedOnes() {
+        assertEquals(0x463b96181691fc9cL, OpeningBook.key(play()));
+        assertEquals(0x823c9b50fd114196L, OpeningBook.key(play("e2e4")));
+        assertEquals(0x0756b94461c50fb0L, OpeningBook.key(play("e2e4", "d7d5")));
+        assertEquals(0x662fafb965db29d4L, OpeningBook.key(play("e2e4", "d7d5", "e4e5")));
+        assertEquals(0x22a48b5a8e47ff78L, OpeningBook.key(play("e2e4", "d7d5", "e4e5", "f7f5")));
+        assertEquals(0x652a607ca3f242c1L, OpeningBook.key(play("e2e4", "d7d5", "e4e5", "f7f5", "e1e2")));
+        assertEquals(0x00fdd303c946bdd9L, OpeningBook.key(play("e2e4", "d7d5", "e4e5", "f7f5", "e1e2", "e8f7")));
+        assertEquals(0x3c8123ea7b067637L, OpeningBook.key(play("a2a4", "b7b5", "h2h4", "b5b4", "c2c4")));
+        assertEquals(0x5c3f9b829b279560L, OpeningBook.key(play("a2a4", "b7b5", "h2h4", "b5b4", "c2c4", "b4c3", "a1a3")));
+    }
+
+    // Two positions' entries, sorted by key; castling is written as king takes rook
+    @Test
+    void findsTheEntriesOfAPosition(@TempDir Path dir) throws IOException {
+        Position start = play();
+        Position castle = play("e2e4", "e7e5", "g1f3", "b8c6", "f1c4", "g8f6");
+        long[][] rows = {
+                {OpeningBook.key(start), 12 << 6 | 28, 5},
+                {OpeningBook.key(start), 11 << 6 | 27, 9},
+                {OpeningBook.key(castle), 4 << 6 | 7, 1},
+        };
+        Arrays.sort(rows, (a, b) -> Long.compareUnsigned(a[0], b[0]));
+        ByteBuffer bytes = ByteBuffer.allocate(16 * rows.length);
+        for (long[] row : rows) {
+            bytes.putLong(row[0]).putShort((short) row[1]).putShort((short) row[2]).putInt(0);
+        }
+        Path file = dir.resolve("book.bin");
+        Files.write(file, bytes.array());
+
+        OpeningBook book = OpeningBook.open(file);
+        assertEquals(3, book.size());
+        List<OpeningBook.Entry> entries = book.entries(start);
+        assertEquals(2, entries.size());
+        assertEquals("d2d4", Move.toUci(entries.get(0).move));
+        assertEquals("e2e4", Move.toUci(entries.get(1).move));
+        assertEquals("e1g1", Move.toUci(book.pick(castle)));
+        assertEquals(Move.NONE, book.pick(play("a2a3")));
+    }
+}
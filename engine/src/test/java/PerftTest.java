@@ -0,0 +1,50 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Node counts of {@link Perft#SUITE} against the published values, to the
+ * deepest depth with at most a few million leaves so the build stays quick.
+ */
+class PerftTest {
+    private static final long MAX_NODES = 5_000_000;
+
+    static Stream<Arguments> suite() {
+        return Arrays.stream(Perft.SUITE).flatMap(entry -> {
+            long[] expected = (long[]) entry[2];
+            int depth = 1;
+            while (depth < expected.length && expected[depth] <= MAX_NODES) depth++;
+            return Stream.of(Arguments.of(entry[0], entry[1], depth, expected[depth - 1]));
+        });
+    }
+
+    @ParameterizedTest(name = "{0} depth {2}")
+    @MethodSource("suite")
+    void matchesPublishedCounts(String name, String fen, int depth, long expected) {
+        assertEquals(expected, new Perft().perft(Position.fromFen(fen), depth));
+    }
+
+    @ParameterizedTest(name = "{0} depth {2}")
+    @MethodSource("suite")
+    void parallelMatchesSequential(String name, String fen, int depth, long expected) {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertEquals(expected, Perft.parallelPerft(Position.fromFen(fen), depth, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsDepthsWithoutMoveLists() {
+        assertThrows(IllegalArgumentException.class, () -> new Perft().perft(Position.startPosition(), Perft.MAX_DEPTH));
+    }
+}
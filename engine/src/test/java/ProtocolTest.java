@@ -0,0 +1,120 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class ProtocolTest {
+    private final ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_FRAME);
+
+    // Checks the length prefix against what was written and returns the frame's length
+    private int frameLength() throws IOException {
+        int length = buffer.getShort(0) & 0xFFFF;
+        assertEquals(buffer.position() - Protocol.LENGTH_BYTES, length);
+        Protocol.checkFrame(buffer, Protocol.LENGTH_BYTES, length);
+        return length;
+    }
+
+    @Test
+    void everyLegalMoveSurvivesTheWire() throws IOException {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[] scratch = new int[MoveGenerator.MAX_MOVES];
+        // Castling, en passant and all four promotions, with and without capture
+        String[] fens = {
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 b kq - 0 1",
+        };
+        for (String fen : fens) {
+            Position position = Position.fromFen(fen);
+            int count = MoveGenerator.generateLegal(position, moves);
+            for (int i = 0; i < count; i++) {
+                buffer.clear();
+                Protocol.putMove(buffer, 1000 + i, moves[i]);
+                assertEquals(7, frameLength());
+                assertEquals(Protocol.MOVE, Protocol.type(buffer, Protocol.LENGTH_BYTES));
+                assertEquals(1000 + i, Protocol.sequence(buffer, Protocol.LENGTH_BYTES));
+                int wire = Protocol.move(buffer, Protocol.LENGTH_BYTES);
+                assertEquals(moves[i], Protocol.resolve(position, wire, scratch), Move.toUci(moves[i]));
+            }
+        }
+    }
+
+    @Test
+    void helloCarriesVersionTokenAndSequence() throws IOException {
+        Protocol.putHello(buffer, 0x8123_4567_89AB_CDEFL, 77);
+        frameLength();
+        assertEquals(Protocol.HELLO, Protocol.type(buffer, Protocol.LENGTH_BYTES));
+        assertEquals(Protocol.VERSION, Protocol.version(buffer, Protocol.LENGTH_BYTES));
+        assertEquals(0x8123_4567_89AB_CDEFL, Protocol.helloToken(buffer, Protocol.LENGTH_BYTES));
+        assertEquals(77, Protocol.helloSequence(buffer, Protocol.LENGTH_BYTES));
+    }
+
+    @Test
+    void gameEventsRoundTripInLogForm() throws IOException {
+        int[][] events = {
+                {Protocol.RESIGN, Piece.BLACK},
+                {Protocol.RESULT, GameLog.result(Game.Status.CHECKMATE, Piece.WHITE)},
+                {Protocol.RESULT, GameLog.result(Game.Status.STALEMATE, Game.NO_WINNER)},
+                {Protocol.NEW_GAME, 0},
+                {Protocol.MOVE, Protocol.wireMove(Move.promotion(52, 60, Piece.KNIGHT, false))},
+        };
+        for (int[] event : events) {
+            buffer.clear();
+            Protocol.putEvent(buffer, 42, event[0], event[1]);
+            frameLength();
+            assertTrue(Protocol.isGameEvent(Protocol.type(buffer, Protocol.LENGTH_BYTES)));
+            assertEquals(event[0], Protocol.type(buffer, Protocol.LENGTH_BYTES));
+            assertEquals(42, Protocol.sequence(buffer, Protocol.LENGTH_BYTES));
+            assertEquals(event[1], Protocol.eventData(buffer, Protocol.LENGTH_BYTES));
+        }
+    }
+
+    @Test
+    void clockAndPingRoundTrip() throws IOException {
+        Protocol.putClock(buffer, 123_456, 0xFFFF_FFFFL + 5);
+        frameLength();
+        assertEquals(123_456, Protocol.clockMillis(buffer, Protocol.LENGTH_BYTES, Piece.WHITE));
+        assertEquals(0xFFFF_FFFFL, Protocol.clockMillis(buffer, Protocol.LENGTH_BYTES, Piece.BLACK));
+
+        buffer.clear();
+        Protocol.putPing(buffer, -12345L);
+        frameLength();
+        ByteBuffer pong = ByteBuffer.allocate(Protocol.MAX_FRAME);
+        Protocol.putPong(pong, buffer, Protocol.LENGTH_BYTES);
+        assertEquals(Protocol.PONG, Protocol.type(pong, Protocol.LENGTH_BYTES));
+        assertEquals(-12345L, Protocol.timestamp(pong, Protocol.LENGTH_BYTES));
+    }
+
+    @Test
+    void namesAreUtf8AndCutToTheFrame() throws IOException {
+        String name = "Đorđe Šahist 象棋";
+        Protocol.putName(buffer, name);
+        assertEquals(name, Protocol.name(buffer, Protocol.LENGTH_BYTES, frameLength()));
+
+        buffer.clear();
+        Protocol.putName(buffer, "x".repeat(2 * Protocol.MAX_FRAME));
+        int length = frameLength();
+        assertEquals(1 + Protocol.MAX_NAME_BYTES, length);
+        assertEquals("x".repeat(Protocol.MAX_NAME_BYTES), Protocol.name(buffer, Protocol.LENGTH_BYTES, length));
+    }
+
+    @Test
+    void positionCarriesTheFen() throws IOException {
+        Protocol.putPosition(buffer, 9, Position.START_FEN);
+        int length = frameLength();
+        assertEquals(9, Protocol.sequence(buffer, Protocol.LENGTH_BYTES));
+        assertEquals(Position.START_FEN, Protocol.fen(buffer, Protocol.LENGTH_BYTES, length));
+    }
+
+    @Test
+    void shortAndUnknownFramesAreRejected() {
+        buffer.put(Protocol.LENGTH_BYTES, (byte) Protocol.MOVE);
+        assertThrows(IOException.class, () -> Protocol.checkFrame(buffer, Protocol.LENGTH_BYTES, 6));
+        buffer.put(Protocol.LENGTH_BYTES, (byte) 0x7F);
+        assertThrows(IOException.class, () -> Protocol.checkFrame(buffer, Protocol.LENGTH_BYTES, 20));
+    }
+}
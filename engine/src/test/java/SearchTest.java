@@ -0,0 +1,29 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class SearchTest {
+    // A stop() that lands while the search is still queued ends it, however long it was allowed to run
+    @Test
+    void stopBeforeStartEndsTheQueuedSearch() {
+        SmpSearch search = new SmpSearch(2, 1);
+        long ticket = search.ticket();
+        search.stop();
+        Search.Result result = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> search.search(Position.startPosition(), Search.Limits.infinite(), null, ticket));
+        assertEquals(0, result.depth);
+    }
+
+    // ...but not one queued after it
+    @Test
+    void stopDoesNotCarryOverToLaterSearches() {
+        SmpSearch search = new SmpSearch(2, 1);
+        search.stop();
+        long ticket = search.ticket();
+        Search.Result result = search.search(Position.startPosition(), Search.Limits.depth(4), null, ticket);
+        assertEquals(4, result.depth);
+    }
+}
@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** The server's peer slot, driven over loopback with hand-written handshakes. */
+class ServerTest {
+    private final Server server = new Server((frame, offset, length) -> { });
+    private ServerSocket listener;
+
+    @BeforeEach
+    void listen() throws IOException {
+        listener = new ServerSocket(0, 8, InetAddress.getLoopbackAddress());
+        // No pings or timeouts during a test
+        server.setHeartbeat(60_000, 120_000);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        listener.close();
+    }
+
+    // Dials, hands the accepted socket to the server and sends HELLO
+    private Socket dial(long token) throws IOException {
+        Socket socket = new Socket(listener.getInetAddress(), listener.getLocalPort());
+        socket.setSoTimeout(5000);
+        Socket accepted = listener.accept();
+        Thread thread = new Thread(() -> server.handle(accepted), "peer");
+        thread.setDaemon(true);
+        thread.start();
+        ByteBuffer hello = ByteBuffer.allocate(Protocol.MAX_FRAME);
+        Protocol.putHello(hello, token, 0);
+        socket.getOutputStream().write(hello.array(), 0, hello.position());
+        return socket;
+    }
+
+    // The token of the server's HELLO answer
+    private static long answer(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] frame = new byte[in.readUnsignedShort()];
+        in.readFully(frame);
+        assertEquals(Protocol.HELLO, frame[0]);
+        return ByteBuffer.wrap(frame).getLong(2);
+    }
+
+    @Test
+    void secondPeerIsTurnedAway() throws IOException {
+        try (Socket first = dial(0)) {
+            // Answered first, so the peers can't race for the slot
+            assertNotEquals(0, answer(first));
+            try (Socket second = dial(0)) {
+                assertThrows(EOFException.class, () -> answer(second));
+            }
+        }
+    }
+
+    @Test
+    void resumingPeerReplacesItsStaleConnection() throws IOException {
+        try (Socket first = dial(0)) {
+            long token = answer(first);
+            // The first connection is silently dead; the client redials with its token
+            try (Socket second = dial(token)) {
+                assertEquals(token, answer(second));
+                assertThrows(IOException.class, () -> {
+                    DataInputStream in = new DataInputStream(first.getInputStream());
+                    while (true) in.readUnsignedByte();
+                });
+            }
+        }
+    }
+
+    @Test
+    void wrongTokenDoesNotTakeOver() throws IOException {
+        try (Socket first = dial(0)) {
+            long token = answer(first);
+            try (Socket second = dial(token ^ 1)) {
+                assertThrows(EOFException.class, () -> answer(second));
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The generated tables, written and mapped back, against known results and the search. */
+class TablebaseTest {
+    private static Tablebase tables;
+    private static final int[] longest = new int[Piece.KING];
+
+    @BeforeAll
+    static void generate(@TempDir Path dir) throws IOException {
+        TablebaseGenerator generator = new TablebaseGenerator(ForkJoinPool.commonPool());
+        for (int type : Tablebase.TYPES) {
+            byte[] values = generator.generate(type);
+            for (byte value : values) {
+                if (value != Tablebase.DRAW) longest[type] = Math.max(longest[type], Tablebase.plies(value & 0xFF));
+            }
+            Tablebase.write(dir.resolve(Tablebase.name(type) + ".tb"), values, longest[type]);
+        }
+        tables = Tablebase.open(dir);
+    }
+
+    private static int probe(String fen) {
+        return tables.probe(Position.fromFen(fen));
+    }
+
+    // Black to move, mated at the end of the longest line: 10 moves with the queen, 16 with the rook, 28 from the pawn
+    @Test
+    void longestMatesAreTheKnownOnes() {
+        assertEquals(20, longest[Piece.QUEEN]);
+        assertEquals(32, longest[Piece.ROOK]);
+        assertEquals(56, longest[Piece.PAWN]);
+    }
+
+    @Test
+    void matesAndStalemates() {
+        assertEquals(2, probe("7k/5Q2/6K1/8/8/8/8/8 w - - 0 1"));
+        assertEquals(1, probe("7k/6Q1/6K1/8/8/8/8/8 b - - 0 1"));
+        assertEquals(Tablebase.DRAW, probe("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1"));
+        assertEquals(1, probe("R6k/8/7K/8/8/8/8/8 b - - 0 1"));
+        // Black's endgames are probed mirrored
+        assertEquals(1, probe("8/8/8/8/8/7k/8/r6K w - - 0 1"));
+    }
+
+    @Test
+    void kingAndPawn() {
+        // King on the sixth in front of its pawn wins whoever is to move
+        assertTrue(Tablebase.isWin(probe("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1")));
+        assertEquals(1, probe("4k3/8/4K3/4P3/8/8/8/8 b - - 0 1") & 1);
+        assertEquals(1, probe("8/8/8/8/4p3/4k3/8/4K3 w - - 0 1") & 1);
+        // The pawn on the sixth with the king behind it only reaches stalemate
+        assertEquals(Tablebase.DRAW, probe("4k3/8/4P3/4K3/8/8/8/8 w - - 0 1"));
+        // A rook's pawn with the defender in the corner
+        assertEquals(Tablebase.DRAW, probe("k7/8/8/8/8/8/P7/7K w - - 0 1"));
+        // The defender can't catch the pawn
+        assertTrue(Tablebase.isWin(probe("7k/8/8/8/P7/8/8/K7 w - - 0 1")));
+    }
+
+    // Every short win a table claims, the search finds as a mate of the same length
+    @Test
+    void shortWinsAgreeWithTheSearch() {
+        Random random = new Random(7);
+        Search search = new Search(new TranspositionTable(4));
+        for (int type : new int[]{Piece.QUEEN, Piece.ROOK}) {
+            int checked = 0;
+            while (checked < 20) {
+                Position pos = new Position();
+                int king = random.nextInt(64), other = random.nextInt(64), square = random.nextInt(64);
+                if (king == other || king == square || other == square
+                        || (Bitboards.kingAttacks(king) & Bitboards.bit(other)) != 0) continue;
+                pos.putPiece(Piece.make(Piece.WHITE, Piece.KING), king);
+                pos.putPiece(Piece.make(Piece.BLACK, Piece.KING), other);
+                pos.putPiece(Piece.make(Piece.WHITE, type), square);
+                if (pos.isInCheck(Piece.BLACK)) continue;
+                pos = Position.fromFen(pos.toFen());
+                int value = tables.probe(pos);
+                if (!Tablebase.isWin(value) || Tablebase.plies(value) > 5) continue;
+                Search.Result result = search.search(pos, Search.Limits.depth(6), null);
+                assertEquals((Tablebase.plies(value) + 1) / 2, result.mateIn(), pos.toFen());
+                checked++;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTest {
+    // Slack for a loaded machine; the wheel itself is at most one tick late
+    private static final long LATE_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    // Taken just before the wheel starts, so its tick boundaries are known to within the constructor
+    private final long created = System.nanoTime();
+    private final TimerWheel wheel = new TimerWheel(1, "test-wheel");
+
+    @AfterEach
+    void stop() {
+        wheel.stop();
+    }
+
+    @Test
+    void deadlinesOnEveryLevelFireOnTimeNeverEarly() throws InterruptedException {
+        // 1 ms ticks: level 0 covers 64 ms, level 1 about 4 s, beyond that level 2
+        List<Long> delays = new ArrayList<>(List.of(0L, 1L, 3L, 63L, 64L, 65L, 130L, 700L, 4095L, 4097L, 4500L));
+        Collections.shuffle(delays);
+        ConcurrentHashMap<Long, Long> fired = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(delays.size());
+        long start = System.nanoTime();
+        for (long delay : delays) {
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(delay);
+            wheel.schedule(deadline, () -> {
+                fired.put(delay, System.nanoTime() - deadline);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS), "fired: " + fired.keySet());
+        for (long delay : delays) {
+            long late = fired.get(delay);
+            assertTrue(late >= 0, delay + " ms fired " + -late + " ns early");
+            assertTrue(late <= LATE_NANOS, delay + " ms fired " + late + " ns late");
+        }
+    }
+
+    @Test
+    void cancelledTimeoutsNeverRun() throws InterruptedException {
+        CountDownLatch later = new CountDownLatch(1);
+        boolean[] ran = new boolean[2];
+        TimerWheel.Timeout beforeFiling = wheel.scheduleAfter(20, TimeUnit.MILLISECONDS, () -> ran[0] = true);
+        beforeFiling.cancel();
+        // 1 ms ticks: filed on level 2, spread down to level 1 at tick 4096, cancelled there
+        long cascade = created + TimeUnit.MILLISECONDS.toNanos(4096);
+        TimerWheel.Timeout cascaded = wheel.schedule(cascade + TimeUnit.MILLISECONDS.toNanos(300), () -> ran[1] = true);
+        TimeUnit.NANOSECONDS.sleep(cascade + TimeUnit.MILLISECONDS.toNanos(150) - System.nanoTime());
+        cascaded.cancel();
+        wheel.schedule(cascade + TimeUnit.MILLISECONDS.toNanos(600), later::countDown);
+        assertTrue(later.await(10, TimeUnit.SECONDS));
+        assertTrue(beforeFiling.isCancelled());
+        assertFalse(ran[0]);
+        assertFalse(ran[1]);
+    }
+
+    @Test
+    void pastDeadlineFiresOnTheNextTick() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        wheel.schedule(System.nanoTime() - TimeUnit.SECONDS.toNanos(1), done::countDown);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+    }
+}
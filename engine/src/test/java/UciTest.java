@@ -0,0 +1,54 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class UciTest {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final Uci uci = new Uci(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+
+    private String output() {
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    // The search finds the mate in one at once, but the GUI gets no bestmove until it says stop
+    @Test
+    void infiniteGoHoldsItsBestmoveUntilStop() throws InterruptedException {
+        uci.handle("position fen 7k/5Q2/6K1/8/8/8/8/8 w - - 0 1");
+        uci.handle("go infinite");
+        // The first search of the process also pays for loading the evaluation
+        for (int i = 0; i < 100 && !output().contains("score mate 1"); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(output().contains("score mate 1"));
+        Thread.sleep(200);
+        assertFalse(output().contains("bestmove"));
+        uci.handle("stop");
+        assertTrue(output().endsWith("bestmove f7g7" + System.lineSeparator()));
+    }
+
+    @Test
+    void depthGoAnswersOnItsOwn() {
+        uci.handle("go depth 3");
+        assertFalse(uci.handle("quit"));
+        assertEquals(1, output().split("bestmove", -1).length - 1);
+    }
+
+    // A malformed number is reported and the command ignored; the session goes on
+    @Test
+    void badNumbersDontEndTheSession() {
+        assertTrue(uci.handle("go wtime abc"));
+        assertTrue(uci.handle("go perft x"));
+        assertTrue(uci.handle("bench deep"));
+        assertFalse(output().contains("bestmove"));
+        assertEquals(3, output().split("info string bad value", -1).length - 1);
+        uci.handle("go depth 2");
+        assertFalse(uci.handle("quit"));
+        assertTrue(output().contains("bestmove"));
+    }
+}
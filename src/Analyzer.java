@@ -0,0 +1,68 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Analysis while the opponent is on move. The position is copied and
+ * searched without a time limit on one low-priority thread, and each
+ * completed iteration is reported with the score from White's side.
+ *
+ * Stopping only raises the running search's flag, so it never holds up
+ * the caller. The search notices within a few thousand nodes. Every
+ * position gets a fresh {@link Search}, so a stop meant for one position
+ * can't cancel the next. The transposition table is kept from position to
+ * position, so when the opponent plays the move that was being analysed,
+ * the next search starts from those entries.
+ */
+final class Analyzer {
+    interface Listener {
+        void onAnalysis(Search.Result result, int whiteScore);
+    }
+
+    static final int HASH_MEGABYTES = 32;
+
+    private final TranspositionTable table = new TranspositionTable(HASH_MEGABYTES);
+    private final Listener listener;
+    private final ExecutorService thread = Executors.newSingleThreadExecutor(task -> {
+        Thread t = new Thread(task, "analysis");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private volatile Search current;
+
+    // The position being analysed; caller's thread only
+    private long analysingKey;
+    private int analysingMoveCount = -1;
+
+    Analyzer(Listener listener) {
+        this.listener = listener;
+    }
+
+    // Starts analysing the game's position unless it already is
+    void analyse(Game game) {
+        long key = game.position().key();
+        int moveCount = game.moveCount();
+        if (key == analysingKey && moveCount == analysingMoveCount) return;
+        stop();
+        analysingKey = key;
+        analysingMoveCount = moveCount;
+        Search search = new Search(table);
+        current = search;
+        Position position = game.position().copy();
+        int side = position.sideToMove();
+        long ticket = search.ticket();
+        thread.execute(() -> {
+            search.search(position, Search.Limits.infinite(), result -> {
+                // Iterations of a search that has been replaced are not news
+                if (current == search) listener.onAnalysis(result, side == Piece.WHITE ? result.score : -result.score);
+            }, ticket);
+        });
+    }
+
+    void stop() {
+        Search search = current;
+        current = null;
+        analysingMoveCount = -1;
+        if (search != null) search.stop();
+    }
+}
@@ -0,0 +1,221 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Microbenchmarks for the rules engine and the evaluators. Each case is warmed up, then timed
+ * over several iterations; the report gives operations per second (median
+ * iteration) and bytes allocated per operation on the measuring thread.
+ *
+ * Usage: java Bench [case-name-prefix ...]
+ */
+public final class Bench {
+    // Middlegame, endgame and tactical positions shared by the rule benchmarks
+    static final String[] POSITIONS = {
+            Position.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+    };
+
+    // Side to move in check: mates, single checks and a double check
+    static final String[] CHECK_POSITIONS = {
+            "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3",
+            "6k1/5ppp/8/8/8/8/5PPP/3r2K1 w - - 0 1",
+            "r1bqkb1r/pppp1Qpp/2n2n2/4p3/2B1P3/8/PPPP1PPP/RNB1K1NR b KQkq - 0 4",
+            "4k3/8/8/8/8/8/4q3/4K3 w - - 0 1",
+            "rnbqk2r/pppp1ppp/5n2/4p3/1b2P3/3P4/PPP2PPP/RNBQKBNR w KQkq - 1 3",
+            "4k3/8/5N2/8/8/8/8/4RK2 b - - 0 1",
+    };
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 10;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final List<String> names = new ArrayList<>();
+    private static final List<LongSupplier> cases = new ArrayList<>();
+
+    // Defeats dead-code elimination of benchmark results
+    static volatile long sink;
+
+    private Bench() {
+    }
+
+    static void register(String name, LongSupplier operationsPerIteration) {
+        names.add(name);
+        cases.add(operationsPerIteration);
+    }
+
+    static Position[] load(String[] fens) {
+        Position[] positions = new Position[fens.length];
+        for (int i = 0; i < fens.length; i++) {
+            positions[i] = Position.fromFen(fens[i]);
+        }
+        return positions;
+    }
+
+    private static void registerRules() {
+        Position[] positions = load(POSITIONS);
+        Position[] checks = load(CHECK_POSITIONS);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+        register("movegen.pseudoLegal", () -> {
+            long ops = 0;
+            for (int rep = 0; rep < 20_000; rep++) {
+                for (Position pos : positions) {
+                    sink += MoveGenerator.generatePseudoLegal(pos, moves);
+                    ops++;
+                }
+            }
+            return ops;
+        });
+        register("movegen.legal", () -> {
+            long ops = 0;
+            for (int rep = 0; rep < 20_000; rep++) {
+                for (Position pos : positions) {
+                    sink += MoveGenerator.generateLegal(pos, moves);
+                    ops++;
+                }
+            }
+            return ops;
+        });
+        register("check.isInCheck", () -> {
+            long ops = 0;
+            for (int rep = 0; rep < 200_000; rep++) {
+                for (Position pos : checks) {
+                    if (pos.isInCheck(pos.sideToMove())) sink++;
+                    ops++;
+                }
+            }
+            return ops;
+        });
+        register("mate.hasLegalMove", () -> {
+            long ops = 0;
+            for (int rep = 0; rep < 100_000; rep++) {
+                for (Position pos : checks) {
+                    if (MoveGenerator.hasLegalMove(pos, moves)) sink++;
+                    ops++;
+                }
+            }
+            return ops;
+        });
+        register("makeUnmake", () -> {
+            long ops = 0;
+            for (int rep = 0; rep < 5_000; rep++) {
+                for (Position pos : positions) {
+                    int count = MoveGenerator.generateLegal(pos, moves);
+                    for (int i = 0; i < count; i++) {
+                        pos.makeMove(moves[i]);
+                        pos.unmakeMove(moves[i]);
+                    }
+                    ops += count;
+                }
+            }
+            return ops;
+        });
+        Perft perft = new Perft();
+        register("perft.kiwipete.d3", () -> perft.perft(positions[1], 3));
+        // Operations are search nodes, so the rate is the engine's nodes per second
+        Search search = new Search(new TranspositionTable(16));
+        register("search.nodes.d5", () -> {
+            long ops = 0;
+            for (Position pos : positions) {
+                search.search(pos, Search.Limits.depth(5), null);
+                ops += search.nodes();
+            }
+            return ops;
+        });
+    }
+
+    // Operations are evaluations of every position one legal move from the bench positions
+    private static void registerEvaluation() {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        Nnue configured = Nnue.configured();
+        Nnue network = configured != null ? configured : Nnue.random(256, 32, 1, NnueKernels.best());
+        registerEvaluator("eval.material", moves, Bench::material);
+        registerEvaluator("eval.handcrafted", moves, Evaluation::handcrafted);
+        // Scalar kernels last: once the kernel calls have seen two implementations the JIT
+        // stops inlining the vector code, as it never needs to when a game runs
+        Nnue simd = network.withKernels(NnueKernels.best());
+        if (!(simd.kernels instanceof ScalarKernels)) {
+            registerEvaluator("eval.nnue.simd", moves, simd::evaluate);
+        }
+        // Every evaluation recomputed from all pieces, to show what the incremental updates save
+        Nnue.Accumulator scratch = new Nnue.Accumulator(simd);
+        registerEvaluator("eval.nnue.refresh", moves, pos -> simd.evaluateFromScratch(pos, scratch));
+        registerEvaluator("eval.nnue.scalar", moves, network.withKernels(new ScalarKernels())::evaluate);
+    }
+
+    // Own positions per case, so one network's accumulator doesn't tax another case's moves
+    private static void registerEvaluator(String name, int[] moves, ToIntFunction<Position> evaluator) {
+        Position[] positions = load(POSITIONS);
+        register(name, () -> {
+            long ops = 0;
+            for (int rep = 0; rep < 200; rep++) {
+                for (Position pos : positions) {
+                    int count = MoveGenerator.generateLegal(pos, moves);
+                    for (int i = 0; i < count; i++) {
+                        pos.makeMove(moves[i]);
+                        sink += evaluator.applyAsInt(pos);
+                        pos.unmakeMove(moves[i]);
+                    }
+                    ops += count;
+                }
+            }
+            return ops;
+        });
+    }
+
+    // Piece values alone, as the game scores captures
+    private static int material(Position pos) {
+        int score = 0;
+        for (long occupied = pos.occupied(); occupied != 0; occupied &= occupied - 1) {
+            int piece = pos.pieceAt(Long.numberOfTrailingZeros(occupied));
+            score += Piece.color(piece) == pos.sideToMove() ? Game.pieceValue(piece) : -Game.pieceValue(piece);
+        }
+        return 100 * score;
+    }
+
+    private static void measure(String name, LongSupplier body) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            body.getAsLong();
+        }
+        long thread = Thread.currentThread().threadId();
+        double[] rates = new double[ITERATIONS];
+        long totalOps = 0, totalBytes = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long bytes = THREADS.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long ops = body.getAsLong();
+            long nanos = System.nanoTime() - start;
+            totalBytes += THREADS.getThreadAllocatedBytes(thread) - bytes;
+            totalOps += ops;
+            rates[i] = ops * 1e9 / nanos;
+        }
+        java.util.Arrays.sort(rates);
+        System.out.printf("%-28s %,16.0f ops/s  (min %,.0f, max %,.0f)  %8.2f B/op%n",
+                name, rates[ITERATIONS / 2], rates[0], rates[ITERATIONS - 1], (double) totalBytes / totalOps);
+    }
+
+    public static void main(String[] args) {
+        registerRules();
+        registerEvaluation();
+        for (int i = 0; i < names.size(); i++) {
+            if (selected(names.get(i), args)) measure(names.get(i), cases.get(i));
+        }
+    }
+
+    private static boolean selected(String name, String[] prefixes) {
+        if (prefixes.length == 0) return true;
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+}
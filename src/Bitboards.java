@@ -0,0 +1,170 @@
+/**
+ * Square numbering, masks and attack tables for the bitboard position.
+ * Squares are numbered a1 = 0 ... h8 = 63, so the UI's (row, col) with
+ * row 0 at the top (rank 8) maps to {@code (7 - row) * 8 + col}.
+ */
+public final class Bitboards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_3 = RANK_1 << 16;
+    public static final long RANK_4 = RANK_1 << 24;
+    public static final long RANK_5 = RANK_1 << 32;
+    public static final long RANK_6 = RANK_1 << 40;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // N, E, NE, NW run towards higher squares; S, W, SW, SE towards lower ones.
+    // Direction d + 4 is the reverse of d, which LINE relies on
+    private static final int[][] DIRECTIONS = {
+            {1, 0}, {0, 1}, {1, 1}, {1, -1},
+            {-1, 0}, {0, -1}, {-1, -1}, {-1, 1}
+    };
+    private static final long[][] RAYS = new long[8][64];
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int rank = sq >>> 3, file = sq & 7;
+            KNIGHT_ATTACKS[sq] = jumps(rank, file, new int[][]{
+                    {2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}});
+            KING_ATTACKS[sq] = jumps(rank, file, new int[][]{
+                    {1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}});
+            PAWN_ATTACKS[Piece.WHITE][sq] = jumps(rank, file, new int[][]{{1, 1}, {1, -1}});
+            PAWN_ATTACKS[Piece.BLACK][sq] = jumps(rank, file, new int[][]{{-1, 1}, {-1, -1}});
+            for (int d = 0; d < 8; d++) {
+                long ray = 0;
+                for (int r = rank + DIRECTIONS[d][0], f = file + DIRECTIONS[d][1];
+                     r >= 0 && r < 8 && f >= 0 && f < 8;
+                     r += DIRECTIONS[d][0], f += DIRECTIONS[d][1]) {
+                    ray |= 1L << (r * 8 + f);
+                }
+                RAYS[d][sq] = ray;
+            }
+        }
+        for (int a = 0; a < 64; a++) {
+            for (int d = 0; d < 8; d++) {
+                long ray = RAYS[d][a];
+                while (ray != 0) {
+                    int b = Long.numberOfTrailingZeros(ray);
+                    ray &= ray - 1;
+                    BETWEEN[a][b] = RAYS[d][a] & ~RAYS[d][b] & ~(1L << b);
+                    LINE[a][b] = RAYS[d][a] | RAYS[(d + 4) & 7][a] | (1L << a);
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    private static long jumps(int rank, int file, int[][] offsets) {
+        long bb = 0;
+        for (int[] o : offsets) {
+            int r = rank + o[0], f = file + o[1];
+            if (r >= 0 && r < 8 && f >= 0 && f < 8) bb |= 1L << (r * 8 + f);
+        }
+        return bb;
+    }
+
+    public static int square(int row, int col) {
+        return (7 - row) * 8 + col;
+    }
+
+    public static int row(int square) {
+        return 7 - (square >>> 3);
+    }
+
+    public static int col(int square) {
+        return square & 7;
+    }
+
+    public static int rank(int square) {
+        return square >>> 3;
+    }
+
+    public static int file(int square) {
+        return square & 7;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int lsb(long bb) {
+        return Long.numberOfTrailingZeros(bb);
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + file(square)) + (char) ('1' + rank(square));
+    }
+
+    public static int parseSquare(String name) {
+        return (name.charAt(1) - '1') * 8 + (name.charAt(0) - 'a');
+    }
+
+    // Squares strictly between a and b if they share a line, otherwise empty
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    // The full line through a and b if they share one, otherwise empty
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    public static long pawnAttacks(int color, int square) {
+        return PAWN_ATTACKS[color][square];
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return Magics.rookAttacks(square, occupied);
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return Magics.bishopAttacks(square, occupied);
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    // Ray-walking reference attacks, used to build the magic tables
+    static long slidingRookAttacks(int square, long occupied) {
+        return positiveRay(0, square, occupied) | positiveRay(1, square, occupied)
+                | negativeRay(4, square, occupied) | negativeRay(5, square, occupied);
+    }
+
+    static long slidingBishopAttacks(int square, long occupied) {
+        return positiveRay(2, square, occupied) | positiveRay(3, square, occupied)
+                | negativeRay(6, square, occupied) | negativeRay(7, square, occupied);
+    }
+
+    private static long positiveRay(int dir, int square, long occupied) {
+        long ray = RAYS[dir][square];
+        long blockers = ray & occupied;
+        if (blockers != 0) ray ^= RAYS[dir][Long.numberOfTrailingZeros(blockers)];
+        return ray;
+    }
+
+    private static long negativeRay(int dir, int square, long occupied) {
+        long ray = RAYS[dir][square];
+        long blockers = ray & occupied;
+        if (blockers != 0) ray ^= RAYS[dir][63 - Long.numberOfLeadingZeros(blockers)];
+        return ray;
+    }
+}
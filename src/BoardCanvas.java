@@ -0,0 +1,196 @@
+import javafx.animation.AnimationTimer;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The board drawn on one {@link Canvas} instead of 64 tile nodes. Only
+ * squares whose piece or highlight changed are repainted, and all changes
+ * made between two pulses are painted together on the next one, so a burst
+ * of moves or a window being dragged costs one redraw per frame. The glyph
+ * font is looked up once per tile size.
+ *
+ * Squares are addressed by display row and column, as in {@link Main}.
+ * FX thread only.
+ */
+final class BoardCanvas {
+    interface SquareHandler {
+        void onSquare(int row, int col);
+    }
+
+    private static final Color LIGHT = Color.rgb(240, 217, 181);
+    private static final Color DARK = Color.rgb(181, 136, 99);
+    private static final int MIN_TILE_SIZE = 20;
+
+    private final Canvas canvas;
+    private final GraphicsContext graphics;
+    private final Map<Integer, Font> fonts = new HashMap<>();
+    private final int[] pieces = new int[64];
+
+    private int tileSize;
+    private int pendingTileSize;
+    private Font font;
+    // Squares to repaint on the next pulse, by Bitboards square
+    private long dirty;
+    private int selected = -1;
+    private int hovered = -1;
+    private long targets;
+    private boolean scheduled;
+
+    private final AnimationTimer pulse = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            scheduled = false;
+            stop();
+            paint();
+        }
+    };
+
+    BoardCanvas(int tileSize, SquareHandler clicks) {
+        this.tileSize = pendingTileSize = tileSize;
+        canvas = new Canvas(tileSize * 8, tileSize * 8);
+        graphics = canvas.getGraphicsContext2D();
+        graphics.setTextAlign(TextAlignment.CENTER);
+        graphics.setTextBaseline(VPos.CENTER);
+        font = fontFor(tileSize);
+        Arrays.fill(pieces, Piece.NONE);
+        dirty = -1L;
+        canvas.setOnMouseClicked(e -> {
+            int square = squareAt(e.getX(), e.getY());
+            if (square >= 0) clicks.onSquare(7 - Bitboards.rank(square), Bitboards.file(square));
+        });
+        canvas.setOnMouseMoved(e -> hover(squareAt(e.getX(), e.getY())));
+        canvas.setOnMouseExited(e -> hover(-1));
+        schedule();
+    }
+
+    Canvas node() {
+        return canvas;
+    }
+
+    // Picks up the pieces that differ from what is on screen; clears any selection
+    void update(GameView view) {
+        for (int square = 0; square < 64; square++) {
+            int piece = view.pieceAt(square);
+            if (piece != pieces[square]) {
+                pieces[square] = piece;
+                dirty |= Bitboards.bit(square);
+            }
+        }
+        clearSelection();
+    }
+
+    void select(int row, int col, long targetSquares) {
+        clearSelection();
+        selected = Bitboards.square(row, col);
+        targets = targetSquares;
+        dirty |= Bitboards.bit(selected) | targets;
+        schedule();
+    }
+
+    void clearSelection() {
+        if (selected >= 0) dirty |= Bitboards.bit(selected);
+        dirty |= targets;
+        selected = -1;
+        targets = 0;
+        schedule();
+    }
+
+    // Fits the board into the given space; only the last size before a pulse is drawn
+    void resize(double width, double height) {
+        pendingTileSize = (int) Math.max(Math.min(width, height) / 8, MIN_TILE_SIZE);
+        if (pendingTileSize != tileSize) schedule();
+    }
+
+    private void hover(int square) {
+        if (square == hovered) return;
+        if (hovered >= 0) dirty |= Bitboards.bit(hovered);
+        if (square >= 0) dirty |= Bitboards.bit(square);
+        hovered = square;
+        schedule();
+    }
+
+    private int squareAt(double x, double y) {
+        int col = (int) (x / tileSize);
+        int row = (int) (y / tileSize);
+        if (x < 0 || y < 0 || col > 7 || row > 7) return -1;
+        return Bitboards.square(row, col);
+    }
+
+    private void schedule() {
+        if (dirty == 0 && pendingTileSize == tileSize) return;
+        if (!scheduled) {
+            scheduled = true;
+            pulse.start();
+        }
+    }
+
+    private void paint() {
+        if (pendingTileSize != tileSize) {
+            tileSize = pendingTileSize;
+            font = fontFor(tileSize);
+            canvas.setWidth(tileSize * 8);
+            canvas.setHeight(tileSize * 8);
+            dirty = -1L;
+        }
+        graphics.setFont(font);
+        for (long squares = dirty; squares != 0; squares &= squares - 1) {
+            paintSquare(Long.numberOfTrailingZeros(squares));
+        }
+        dirty = 0;
+    }
+
+    private void paintSquare(int square) {
+        int row = 7 - Bitboards.rank(square);
+        int col = Bitboards.file(square);
+        double x = col * tileSize;
+        double y = row * tileSize;
+        graphics.setFill((row + col) % 2 == 0 ? LIGHT : DARK);
+        graphics.fillRect(x, y, tileSize, tileSize);
+
+        double width = 0;
+        if (square == selected) {
+            graphics.setStroke(Color.YELLOW);
+            width = 4;
+        } else if ((targets & Bitboards.bit(square)) != 0) {
+            graphics.setStroke(Color.GREEN);
+            width = 3;
+        } else if (square == hovered && pieces[square] != Piece.NONE) {
+            graphics.setStroke(Color.YELLOW);
+            width = 2;
+        }
+        if (width > 0) {
+            graphics.setLineWidth(width);
+            graphics.strokeRect(x + width / 2, y + width / 2, tileSize - width, tileSize - width);
+        }
+
+        int piece = pieces[square];
+        if (piece != Piece.NONE) {
+            graphics.setFill(Piece.color(piece) == Piece.WHITE ? Color.WHITE : Color.BLACK);
+            graphics.fillText(glyph(piece), x + tileSize / 2.0, y + tileSize / 2.0);
+        }
+    }
+
+    private Font fontFor(int size) {
+        return fonts.computeIfAbsent(size, s -> Font.font("Arial", FontWeight.BOLD, s * 0.4));
+    }
+
+    static String glyph(int piece) {
+        switch (Piece.type(piece)) {
+            case Piece.KING: return "♔";
+            case Piece.QUEEN: return "♕";
+            case Piece.ROOK: return "♖";
+            case Piece.BISHOP: return "♗";
+            case Piece.KNIGHT: return "♘";
+            case Piece.PAWN: return "♙";
+            default: return "";
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The spectator feed of one {@link GameRoom}. Each event is encoded once,
+ * appended to a chain of direct segments that are never written again below
+ * their published limit, and every spectator reads the same bytes through
+ * its own cursor: fanning a move out to thousands of viewers costs one
+ * encoding plus one socket write each, with no per-spectator copy.
+ *
+ * A spectator whose socket can't keep up is never waited for. Once it is
+ * more than {@link #MAX_LAG_BYTES} behind it is sent the current position
+ * instead, encoded once and shared by everyone skipping at that point, and
+ * carries on from the live end of the feed.
+ *
+ * Spectators are woken per event loop: one task per loop per burst of
+ * events flushes every spectator that loop owns.
+ */
+final class Broadcast {
+    static final int SEGMENT_BYTES = 16 * 1024;
+    static final int MAX_LAG_BYTES = 4 * 1024;
+
+    private static final class Segment {
+        final ByteBuffer data = ByteBuffer.allocateDirect(SEGMENT_BYTES);
+        // Bytes below the limit are complete frames and never change
+        volatile int limit;
+        volatile Segment next;
+    }
+
+    // The board as of a point in the feed, for spectators starting or skipping there
+    private static final class Snapshot {
+        final ByteBuffer frame;
+        final Segment segment;
+        final int offset;
+
+        Snapshot(ByteBuffer frame, Segment segment, int offset) {
+            this.frame = frame;
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    private static final class Group {
+        final List<ServerSession> sessions = new CopyOnWriteArrayList<>();
+        final AtomicBoolean wakePending = new AtomicBoolean();
+    }
+
+    private final Map<GameServer.EventLoop, Group> groups = new ConcurrentHashMap<>();
+    private Position position = Position.startPosition();
+    private Segment tail = new Segment();
+    private ByteBuffer writer = tail.data.duplicate();
+    private int sequence;
+    private Snapshot latest;
+    private volatile boolean closed;
+
+    // A legal move of the room's game, already applied there
+    void publishMove(int move) {
+        synchronized (this) {
+            position.makeMove(move);
+            append(Protocol.MOVE, Protocol.wireMove(move));
+        }
+        wake();
+    }
+
+    // RESIGN, RESULT or NEW_GAME, with data packed as in GameLog
+    void publish(int type, int data) {
+        synchronized (this) {
+            if (type == Protocol.NEW_GAME) position = Position.startPosition();
+            append(type, data);
+        }
+        wake();
+    }
+
+    // No more events; spectators are disconnected once they have read everything
+    void close() {
+        closed = true;
+        wake();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    private void append(int type, int data) {
+        if (SEGMENT_BYTES - tail.limit < Protocol.FIXED_FRAME_BYTES) {
+            Segment next = new Segment();
+            tail.next = next;
+            tail = next;
+            writer = next.data.duplicate();
+        }
+        writer.position(tail.limit);
+        Protocol.putEvent(writer, ++sequence, type, data);
+        tail.limit = writer.position();
+        latest = null;
+    }
+
+    private synchronized Snapshot snapshot() {
+        if (latest == null) {
+            String fen = position.toFen();
+            ByteBuffer frame = ByteBuffer.allocate(Protocol.LENGTH_BYTES + 5 + fen.length());
+            Protocol.putPosition(frame, sequence, fen);
+            frame.flip();
+            latest = new Snapshot(frame.asReadOnlyBuffer(), tail, tail.limit);
+        }
+        return latest;
+    }
+
+    void subscribe(ServerSession session) {
+        groups.computeIfAbsent(session.loop, loop -> new Group()).sessions.add(session);
+    }
+
+    void unsubscribe(ServerSession session) {
+        Group group = groups.get(session.loop);
+        if (group != null) group.sessions.remove(session);
+    }
+
+    private void wake() {
+        for (Map.Entry<GameServer.EventLoop, Group> entry : groups.entrySet()) {
+            Group group = entry.getValue();
+            if (group.wakePending.compareAndSet(false, true)) {
+                entry.getKey().execute(() -> {
+                    group.wakePending.set(false);
+                    for (ServerSession session : group.sessions) {
+                        // One whose socket is full is flushed when it drains, not polled on every move
+                        if (!session.awaitingWritable()) session.flush();
+                    }
+                });
+            }
+        }
+    }
+
+    Reader reader() {
+        return new Reader(snapshot());
+    }
+
+    /**
+     * One spectator's position in the feed. Used only by the event loop that
+     * owns the spectator's socket.
+     */
+    final class Reader {
+        private ByteBuffer pending;
+        private Segment segment;
+        private ByteBuffer view;
+        private int cursor;
+        // Start of the frame the cursor is in; equal to the cursor between frames
+        private int frameStart;
+
+        private Reader(Snapshot start) {
+            restart(start);
+        }
+
+        private void restart(Snapshot start) {
+            pending = start.frame.duplicate();
+            segment = start.segment;
+            view = segment.data.duplicate();
+            cursor = frameStart = start.offset;
+        }
+
+        /**
+         * Writes as much as the socket takes. Returns true once everything
+         * published so far has been sent, false if the socket is full.
+         */
+        boolean write(SocketChannel channel) throws IOException {
+            if (pending == null && lagBytes() > MAX_LAG_BYTES) {
+                if (frameStart != cursor && !finishFrame(channel)) return false;
+                restart(snapshot());
+            }
+            if (pending != null) {
+                channel.write(pending);
+                if (pending.hasRemaining()) return false;
+                pending = null;
+            }
+            while (true) {
+                int limit = segment.limit;
+                if (cursor < limit) {
+                    view.limit(limit).position(cursor);
+                    channel.write(view);
+                    advance(view.position());
+                    if (cursor < limit) return false;
+                }
+                Segment next = segment.next;
+                if (next == null) return true;
+                // The limit is final before the next segment is linked, but may have grown since it was read
+                if (cursor < segment.limit) continue;
+                segment = next;
+                view = next.data.duplicate();
+                cursor = frameStart = 0;
+            }
+        }
+
+        // Sends the rest of a partly written frame so the stream can be cut after it
+        private boolean finishFrame(SocketChannel channel) throws IOException {
+            int end = frameStart + Protocol.LENGTH_BYTES + (view.getShort(frameStart) & 0xFFFF);
+            view.limit(end).position(cursor);
+            channel.write(view);
+            advance(view.position());
+            return cursor == end;
+        }
+
+        private void advance(int position) {
+            cursor = position;
+            while (frameStart < cursor) {
+                int end = frameStart + Protocol.LENGTH_BYTES + (view.getShort(frameStart) & 0xFFFF);
+                if (end > cursor) break;
+                frameStart = end;
+            }
+        }
+
+        private int lagBytes() {
+            int lag = segment.limit - cursor;
+            for (Segment s = segment.next; s != null && lag <= MAX_LAG_BYTES; s = s.next) {
+                lag += s.limit;
+            }
+            return lag;
+        }
+    }
+}
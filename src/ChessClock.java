@@ -0,0 +1,107 @@
+import java.util.function.LongSupplier;
+
+/**
+ * Two-sided game clock driven by a monotonic nanosecond source. Time is only
+ * charged when the clock is pressed at a move boundary, so no whole-second
+ * rounding creeps in however often the display polls it.
+ */
+public final class ChessClock {
+    public static final int STOPPED = -1;
+
+    private final TimeControl control;
+    private final LongSupplier nanoTime;
+    // Remaining time of each side as of the start of the current turn
+    private final long[] remaining = new long[2];
+    private int running = STOPPED;
+    private long turnStart;
+
+    public ChessClock(TimeControl control) {
+        this(control, System::nanoTime);
+    }
+
+    public ChessClock(TimeControl control, LongSupplier nanoTime) {
+        this.control = control;
+        this.nanoTime = nanoTime;
+        reset();
+    }
+
+    public TimeControl timeControl() {
+        return control;
+    }
+
+    public void reset() {
+        remaining[0] = remaining[1] = control.baseMillis() * 1_000_000L;
+        running = STOPPED;
+    }
+
+    public void start(int color) {
+        running = color;
+        turnStart = nanoTime.getAsLong();
+    }
+
+    /**
+     * Ends the running side's turn, applies the increment and starts the
+     * other side's clock. Returns false, leaving the clock stopped, if the
+     * mover's time had already run out.
+     */
+    public boolean press() {
+        if (running == STOPPED) return true;
+        long now = nanoTime.getAsLong();
+        long used = now - turnStart;
+        int mover = running;
+        remaining[mover] -= used;
+        if (remaining[mover] <= 0) {
+            remaining[mover] = 0;
+            running = STOPPED;
+            return false;
+        }
+        long increment = control.incrementMillis() * 1_000_000L;
+        switch (control.increment()) {
+            case FISCHER: remaining[mover] += increment; break;
+            case BRONSTEIN: remaining[mover] += Math.min(used, increment); break;
+            default: break;
+        }
+        running = mover ^ 1;
+        turnStart = now;
+        return true;
+    }
+
+    // Charges the running side and stops both clocks
+    public void stop() {
+        if (running == STOPPED) return;
+        remaining[running] = remainingNanos(running);
+        running = STOPPED;
+    }
+
+    public int running() {
+        return running;
+    }
+
+    public long remainingNanos(int color) {
+        if (color != running) return remaining[color];
+        return Math.max(0, remaining[color] - (nanoTime.getAsLong() - turnStart));
+    }
+
+    public long remainingMillis(int color) {
+        return remainingNanos(color) / 1_000_000;
+    }
+
+    public boolean flagFallen() {
+        return running != STOPPED && remainingNanos(running) == 0;
+    }
+
+    // System.nanoTime at which the running side's flag falls
+    public long deadlineNanos() {
+        return running == STOPPED ? Long.MAX_VALUE : turnStart + remaining[running];
+    }
+
+    // Sets a side's remaining time as of now
+    public void set(int color, long nanos) {
+        remaining[color] = nanos;
+        if (color == running) turnStart = nanoTime.getAsLong();
+    }
+
+    public void credit(int color, long nanos) {
+        remaining[color] += nanos;
+    }
+}
@@ -3,13 +3,18 @@ import java.net.*;
 public class Client extends NetworkConnection {
     private String ip;
 
-    public Client(String ip, java.util.function.Consumer<String> callback) {
+    public Client(String ip, FrameHandler callback) {
         super(callback);
         this.ip = ip;
     }
 
+    public Client(String ip, FrameHandler callback, ThreadMode threadMode) {
+        super(callback, threadMode);
+        this.ip = ip;
+    }
+
     @Override
     protected Socket createSocket() throws Exception {
-        return new Socket(ip, 55555);
+        return new Socket(ip, Server.PORT);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,481 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Compares ways of hosting many games: a blocking relay with one platform
+ * {@code ConnectionThread} per socket, the same relay with one virtual
+ * thread per socket, and the selector-based {@link GameServer}. Each run
+ * opens many idle games plus a few active ones that keep relaying moves, then
+ * reports threads, heap and resident memory added by the server and the
+ * move-relay latency seen by the active players.
+ *
+ * The watch mode runs the {@link GameServer} with spectators in place of the
+ * idle games, spread over the active games. Half of them read everything;
+ * the other half never read at all, so the players' latency shows whether
+ * stalled viewers hold the game up, and the readers show whether they still
+ * see every move.
+ *
+ * Every mode runs in a fresh JVM so the memory figures don't bleed into
+ * each other.
+ *
+ * Usage: java ConnectionBench [platform|virtual|nio|watch] [idleGames] [activeGames] [movesPerGame]
+ */
+public final class ConnectionBench {
+    private static final String[] MODES = {"platform", "virtual", "nio", "watch"};
+
+    // Knight shuffle: Ng1-f3, Ng8-f6, Nf3-g1, Nf6-g8, legal for ever. A GameServer
+    // calls the third repetition a draw and starts over, which keeps the same cycle.
+    private static final int[] WHITE_MOVES = {move("g1", "f3"), move("f3", "g1")};
+    private static final int[] BLACK_MOVES = {move("g8", "f6"), move("f6", "g8")};
+
+    private ConnectionBench() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !Arrays.asList(MODES).contains(args[0])) {
+            for (String mode : MODES) fork(mode, args);
+            return;
+        }
+        int idle = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int active = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int moves = args.length > 3 ? Integer.parseInt(args[3]) : 5000;
+        run(args[0], idle, active, moves);
+    }
+
+    private static void fork(String mode, String[] args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ConnectionBench.class.getName());
+        command.add(mode);
+        command.addAll(Arrays.asList(args));
+        int exit = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (exit != 0) throw new IllegalStateException(mode + " run failed with exit code " + exit);
+    }
+
+    private static void run(String mode, int idleGames, int activeGames, int moves) throws Exception {
+        // Build the attack tables up front so the first validated move isn't charged for them
+        MoveGenerator.generateLegal(Position.startPosition(), new int[MoveGenerator.MAX_MOVES]);
+        Footprint before = Footprint.take();
+
+        int port;
+        AutoCloseable server;
+        boolean watch = mode.equals("watch");
+        if (mode.equals("nio") || watch) {
+            GameServer gameServer = new GameServer(0, Runtime.getRuntime().availableProcessors());
+            gameServer.start();
+            port = gameServer.port();
+            server = gameServer::stop;
+        } else {
+            RelayServer relay = new RelayServer(mode.equals("virtual")
+                    ? NetworkConnection.ThreadMode.VIRTUAL : NetworkConnection.ThreadMode.PLATFORM);
+            port = relay.port();
+            server = relay;
+        }
+
+        // Active players connect first and one at a time, so the server pairs
+        // them with each other rather than with an idle socket
+        Player[] players = new Player[activeGames * 2];
+        for (int g = 0; g < activeGames; g++) {
+            players[2 * g] = new Player(connect(port));
+            players[2 * g].expect(Protocol.HELLO);
+            players[2 * g + 1] = new Player(connect(port));
+            players[2 * g + 1].expect(Protocol.HELLO);
+            players[2 * g].awaitColor();
+            players[2 * g + 1].awaitColor();
+        }
+        // Client sockets are plain blocking sockets without threads of their own,
+        // so whatever the process gains beyond them belongs to the server
+        List<Socket> idle = new ArrayList<>();
+        byte[] hello = helloFrame();
+        SpectatorDrain drain = watch ? new SpectatorDrain() : null;
+        for (int i = 0; i < idleGames * 2; i++) {
+            if (watch && (i & 1) == 0) {
+                drain.add(port, watchFrame(i % activeGames + 1));
+                continue;
+            }
+            Socket socket = connect(port);
+            socket.getOutputStream().write(watch ? watchFrame(i % activeGames + 1) : hello);
+            idle.add(socket);
+        }
+        Thread.sleep(500);
+        Footprint loaded = Footprint.take();
+
+        long[] latencies = new long[activeGames * moves];
+        Thread[] games = new Thread[activeGames];
+        for (int g = 0; g < activeGames; g++) {
+            Player a = players[2 * g], b = players[2 * g + 1];
+            Player white = a.white ? a : b, black = a.white ? b : a;
+            int base = g * moves;
+            games[g] = new Thread(() -> play(white, black, latencies, base, moves), "bench-game-" + g);
+            games[g].start();
+        }
+        for (Thread game : games) {
+            game.join();
+        }
+        if (watch) {
+            Thread.sleep(500);
+            drain.report();
+        }
+
+        for (Player player : players) player.socket.close();
+        for (Socket socket : idle) socket.close();
+        server.close();
+
+        Arrays.sort(latencies);
+        System.out.printf("%-8s %,6d connections  %,5d threads  heap %+,8d KB  rss %+,8d KB  relay p50 %,6.1f us  p99 %,7.1f us  max %,8.1f us%n",
+                mode, idle.size() + players.length + (watch ? idleGames : 0),
+                loaded.threads - before.threads,
+                (loaded.heap - before.heap) / 1024,
+                loaded.rssKb - before.rssKb,
+                percentile(latencies, 0.50) / 1e3,
+                percentile(latencies, 0.99) / 1e3,
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e3);
+    }
+
+    // One sample per relayed move: send on one socket until the frame arrives on the other
+    private static void play(Player white, Player black, long[] latencies, int base, int moves) {
+        try {
+            for (int i = 0; i < moves; i++) {
+                Player mover = (i & 1) == 0 ? white : black;
+                Player receiver = mover == white ? black : white;
+                int move = mover == white ? WHITE_MOVES[(i >> 1) & 1] : BLACK_MOVES[(i >> 1) & 1];
+                long start = System.nanoTime();
+                mover.sendMove(move);
+                receiver.awaitMove();
+                latencies[base + i] = System.nanoTime() - start;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    private static int move(String from, String to) {
+        return Move.make(Bitboards.parseSquare(from), Bitboards.parseSquare(to), Move.QUIET);
+    }
+
+    private static byte[] helloFrame() {
+        ByteBuffer frame = ByteBuffer.allocate(16);
+        Protocol.putHello(frame, 0, 0);
+        return frame.array();
+    }
+
+    private static byte[] watchFrame(int game) {
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        Protocol.putWatch(frame, game);
+        return frame.array();
+    }
+
+    private static byte[] colorFrame(int color) {
+        ByteBuffer frame = ByteBuffer.allocate(4);
+        Protocol.putColor(frame, color);
+        return frame.array();
+    }
+
+    // Reads one frame into bytes, type byte first, and returns its length
+    private static int readFrame(DataInputStream in, byte[] bytes) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length == 0 || length > bytes.length) throw new IOException("Bad frame length " + length);
+        in.readFully(bytes, 0, length);
+        return length;
+    }
+
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket("127.0.0.1", port);
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    private static final class Player {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final byte[] frame = new byte[Protocol.MAX_FRAME];
+        final ByteBuffer outFrame = ByteBuffer.allocate(Protocol.FIXED_FRAME_BYTES);
+        boolean white;
+        int sequence;
+
+        Player(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(socket.getInputStream());
+            this.out = new DataOutputStream(socket.getOutputStream());
+            out.write(helloFrame());
+            out.flush();
+        }
+
+        int readFrame() throws IOException {
+            return ConnectionBench.readFrame(in, frame);
+        }
+
+        void expect(int type) throws IOException {
+            readFrame();
+            if (frame[0] != type) throw new IOException("Expected frame type " + type + ", got " + frame[0]);
+        }
+
+        void sendMove(int move) throws IOException {
+            outFrame.clear();
+            Protocol.putMove(outFrame, ++sequence, move);
+            out.write(outFrame.array(), 0, outFrame.position());
+            out.flush();
+        }
+
+        // Skips the NEW_GAME frames a GameServer sends when a game ends
+        void awaitMove() throws IOException {
+            do {
+                readFrame();
+            } while (frame[0] != Protocol.MOVE);
+        }
+
+        void awaitColor() throws IOException {
+            expect(Protocol.COLOR);
+            white = frame[1] == Piece.WHITE;
+        }
+    }
+
+    // One selector thread reading every spectator that keeps up, tracking the last event each saw
+    private static final class SpectatorDrain extends Thread {
+        private final Selector selector;
+        private final List<Watcher> watchers = new CopyOnWriteArrayList<>();
+
+        private static final class Watcher {
+            final SocketChannel channel;
+            final int game;
+            final ByteBuffer in = ByteBuffer.allocate(4096);
+            int lastSequence;
+            long frames;
+
+            Watcher(SocketChannel channel, int game) {
+                this.channel = channel;
+                this.game = game;
+            }
+        }
+
+        SpectatorDrain() throws IOException {
+            super("spectator-drain");
+            setDaemon(true);
+            selector = Selector.open();
+            start();
+        }
+
+        void add(int port, byte[] watchFrame) throws IOException {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+            channel.socket().setTcpNoDelay(true);
+            channel.write(ByteBuffer.wrap(watchFrame));
+            channel.configureBlocking(false);
+            Watcher watcher = new Watcher(channel, ByteBuffer.wrap(watchFrame).getInt(4));
+            watchers.add(watcher);
+            channel.register(selector, SelectionKey.OP_READ, watcher);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    selector.select();
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        read((Watcher) key.attachment());
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                // closed at the end of the run
+            }
+        }
+
+        private static void read(Watcher watcher) throws IOException {
+            ByteBuffer in = watcher.in;
+            if (watcher.channel.read(in) < 0) {
+                watcher.channel.close();
+                return;
+            }
+            in.flip();
+            while (in.remaining() >= 2) {
+                int start = in.position();
+                int length = in.getShort(start) & 0xFFFF;
+                if (in.remaining() < length + 2) break;
+                int type = in.get(start + 2);
+                if (Protocol.isGameEvent(type) || type == Protocol.POSITION) {
+                    watcher.lastSequence = in.getInt(start + 3);
+                    watcher.frames++;
+                }
+                in.position(start + 2 + length);
+            }
+            in.compact();
+        }
+
+        void report() throws IOException {
+            Map<Integer, Integer> latest = new HashMap<>();
+            long frames = 0;
+            for (Watcher watcher : watchers) {
+                latest.merge(watcher.game, watcher.lastSequence, Math::max);
+                frames += watcher.frames;
+            }
+            int behind = 0;
+            for (Watcher watcher : watchers) {
+                if (watcher.lastSequence < latest.get(watcher.game)) behind++;
+                watcher.channel.close();
+            }
+            selector.close();
+            System.out.printf("watch    %,6d reading spectators got %,d frames, %,d behind at the end; as many again never read%n",
+                    watchers.size(), frames, behind);
+        }
+    }
+
+    private static final class Footprint {
+        final int threads;
+        final long heap;
+        final long rssKb;
+
+        private Footprint(int threads, long heap, long rssKb) {
+            this.threads = threads;
+            this.heap = heap;
+            this.rssKb = rssKb;
+        }
+
+        static Footprint take() throws IOException {
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            return new Footprint(ManagementFactory.getThreadMXBean().getThreadCount(),
+                    runtime.totalMemory() - runtime.freeMemory(), rssKb());
+        }
+
+        // Linux only; 0 elsewhere
+        private static long rssKb() throws IOException {
+            Path status = Path.of("/proc/self/status");
+            if (!Files.exists(status)) return 0;
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * The peer-to-peer {@link Server} model scaled out: an accept loop that
+     * starts one blocking read loop per socket on the given kind of thread
+     * and pairs consecutive connections into games. Frames are relayed
+     * without being checked.
+     */
+    static final class RelayServer implements AutoCloseable {
+        private final NetworkConnection.ThreadMode threadMode;
+        private final ServerSocket serverSocket;
+        private Peer waiting;
+
+        RelayServer(NetworkConnection.ThreadMode threadMode) throws IOException {
+            this.threadMode = threadMode;
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress(0), 1024);
+            Thread acceptor = new Thread(this::acceptLoop, "relay-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    Peer peer = new Peer(socket);
+                    peer.send(helloFrame(), 16);
+                    pair(peer);
+                    threadMode.start("relay-peer", peer::serve);
+                }
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) e.printStackTrace();
+            }
+        }
+
+        private synchronized void pair(Peer peer) throws IOException {
+            if (waiting == null) {
+                waiting = peer;
+                return;
+            }
+            waiting.opponent = peer;
+            peer.opponent = waiting;
+            waiting.send(colorFrame(Piece.WHITE), 4);
+            peer.send(colorFrame(Piece.BLACK), 4);
+            waiting = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+
+    private static final class Peer {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        volatile Peer opponent;
+
+        Peer(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(socket.getInputStream());
+            this.out = new DataOutputStream(socket.getOutputStream());
+        }
+
+        void send(byte[] frame, int length) throws IOException {
+            synchronized (out) {
+                out.write(frame, 0, length);
+                out.flush();
+            }
+        }
+
+        void serve() {
+            byte[] frame = new byte[Protocol.MAX_FRAME];
+            try (socket) {
+                readFrame(in, frame);
+                if (frame[2] != Protocol.HELLO) return;
+                while (true) {
+                    int length = readFrame(in, frame);
+                    Peer other = opponent;
+                    if (other != null) other.send(frame, length + 2);
+                }
+            } catch (IOException e) {
+                // peer gone
+            }
+        }
+
+        // Keeps the length prefix in front of the frame so it can be relayed as is
+        private static int readFrame(DataInputStream in, byte[] frame) throws IOException {
+            int length = in.readUnsignedShort();
+            if (length == 0 || length > frame.length - 2) throw new IOException("Bad frame length " + length);
+            frame[0] = (byte) (length >> 8);
+            frame[1] = (byte) length;
+            in.readFully(frame, 2, length);
+            return length;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The local computer opponent. When it is the engine's turn it copies the
+ * position and searches it on its own thread, budgeting from the time left
+ * on its clock, then hands the move back. While the position is in the
+ * opening book it plays a book move instead, without searching. A reply that arrives after the
+ * game has moved on is for a position no longer on the board and is
+ * dropped by the caller, which then asks again.
+ */
+final class EnginePlayer {
+    interface MoveHandler {
+        void onMove(int move, long positionKey, int moveCount);
+    }
+
+    private final int color;
+    private final OpeningBook book;
+    private final SmpSearch search = SmpSearch.configured();
+    private final Search.Listener listener;
+    private final ExecutorService thread = Executors.newSingleThreadExecutor(task -> {
+        Thread t = new Thread(task, "engine");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // The position being searched, so repeated calls don't start it again; caller's thread only
+    private long pendingKey;
+    private int pendingMoveCount = -1;
+
+    EnginePlayer(int color, OpeningBook book, Search.Listener listener) {
+        this.color = color;
+        this.book = book;
+        this.listener = listener;
+    }
+
+    int color() {
+        return color;
+    }
+
+    // Starts a search if the engine is to move in a position it isn't already searching
+    void consider(Game game, MoveHandler handler) {
+        if (game.isOver() || game.sideToMove() != color) return;
+        long key = game.position().key();
+        int moveCount = game.moveCount();
+        if (key == pendingKey && moveCount == pendingMoveCount) return;
+        // A search of an earlier position would hold up this one
+        if (pendingMoveCount >= 0) search.stop();
+        pendingKey = key;
+        pendingMoveCount = moveCount;
+        int bookMove = book.pick(game.position());
+        if (bookMove != Move.NONE) {
+            handler.onMove(bookMove, key, moveCount);
+            return;
+        }
+        Position position = game.position().copy();
+        Search.Limits limits = Search.Limits.clock(game.timeLeftMillis(color), game.timeControl().incrementMillis(), 0);
+        long ticket = search.ticket();
+        thread.execute(() -> {
+            Search.Result result = search.search(position, limits, listener, ticket);
+            if (result != null) handler.onMove(result.bestMove(), key, moveCount);
+        });
+    }
+
+    // The reply for this position was applied or dropped; the next consider searches afresh
+    void moveHandled(long positionKey, int moveCount) {
+        if (positionKey == pendingKey && moveCount == pendingMoveCount) pendingMoveCount = -1;
+    }
+
+    void stop() {
+        search.stop();
+    }
+}
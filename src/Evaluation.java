@@ -0,0 +1,135 @@
+/**
+ * Static evaluation for the engine: material from {@link Game#pieceValue}
+ * in centipawns plus piece-square tables, tapered between middlegame and
+ * endgame king tables by the material left on the board. Scores are from
+ * the side to move's point of view. With -Dchess.nnue set, the
+ * {@link Nnue} network evaluates instead.
+ */
+public final class Evaluation {
+    // Tables read as a board from White's side, a8 first; White indexes with square ^ 56
+    private static final int[] PAWN = {
+              0,   0,   0,   0,   0,   0,   0,   0,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             10,  10,  20,  30,  30,  20,  10,  10,
+              5,   5,  10,  25,  25,  10,   5,   5,
+              0,   0,   0,  20,  20,   0,   0,   0,
+              5,  -5, -10,   0,   0, -10,  -5,   5,
+              5,  10,  10, -20, -20,  10,  10,   5,
+              0,   0,   0,   0,   0,   0,   0,   0,
+    };
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   5,  15,  20,  20,  15,   5, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   5,  10,  15,  15,  10,   5, -30,
+            -40, -20,   0,   5,   5,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50,
+    };
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,   5,  10,  10,   5,   5, -10,
+            -10,   0,  10,  10,  10,  10,   0, -10,
+            -10,  10,  10,  10,  10,  10,  10, -10,
+            -10,   5,   0,   0,   0,   0,   5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20,
+    };
+    private static final int[] ROOK = {
+              0,   0,   0,   0,   0,   0,   0,   0,
+              5,  10,  10,  10,  10,  10,  10,   5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+              0,   0,   0,   5,   5,   0,   0,   0,
+    };
+    private static final int[] QUEEN = {
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+             -5,   0,   5,   5,   5,   5,   0,  -5,
+              0,   0,   5,   5,   5,   5,   0,  -5,
+            -10,   5,   5,   5,   5,   5,   0, -10,
+            -10,   0,   5,   0,   0,   0,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+    };
+    private static final int[] KING_MIDDLEGAME = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+             20,  20,   0,   0,   0,   0,  20,  20,
+             20,  30,  10,   0,   0,  10,  30,  20,
+    };
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10,   0,   0, -10, -20, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -30,   0,   0,   0,   0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50,
+    };
+    private static final int[][] TABLES = {PAWN, KNIGHT, BISHOP, ROOK, QUEEN};
+    // Game phase weight by piece type; 24 with all minor and major pieces on the board
+    private static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+    private static final int FULL_PHASE = 24;
+    private static final Nnue NETWORK = Nnue.configured();
+
+    // Material plus placement for each piece, by piece and square
+    private static final int[][] PIECE_SQUARE = new int[12][64];
+
+    static {
+        for (int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            for (int type = Piece.PAWN; type < Piece.KING; type++) {
+                int piece = Piece.make(color, type);
+                for (int square = 0; square < 64; square++) {
+                    PIECE_SQUARE[piece][square] = 100 * Game.pieceValue(piece) + TABLES[type][index(color, square)];
+                }
+            }
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    private static int index(int color, int square) {
+        return color == Piece.WHITE ? square ^ 56 : square;
+    }
+
+    public static int evaluate(Position position) {
+        return NETWORK != null ? NETWORK.evaluate(position) : handcrafted(position);
+    }
+
+    public static int handcrafted(Position position) {
+        int score = 0;
+        int phase = 0;
+        for (int piece = 0; piece < 12; piece++) {
+            if (Piece.type(piece) == Piece.KING) continue;
+            int sign = Piece.color(piece) == Piece.WHITE ? 1 : -1;
+            int[] table = PIECE_SQUARE[piece];
+            for (long bits = position.pieces(piece); bits != 0; bits &= bits - 1) {
+                score += sign * table[Long.numberOfTrailingZeros(bits)];
+                phase += PHASE[Piece.type(piece)];
+            }
+        }
+        phase = Math.min(phase, FULL_PHASE);
+        int whiteKing = position.kingSquare(Piece.WHITE);
+        int blackKing = position.kingSquare(Piece.BLACK);
+        if (whiteKing != Position.NO_SQUARE) score += king(Piece.WHITE, whiteKing, phase);
+        if (blackKing != Position.NO_SQUARE) score -= king(Piece.BLACK, blackKing, phase);
+        return position.sideToMove() == Piece.WHITE ? score : -score;
+    }
+
+    private static int king(int color, int square, int phase) {
+        int index = index(color, square);
+        return (KING_MIDDLEGAME[index] * phase + KING_ENDGAME[index] * (FULL_PHASE - phase)) / FULL_PHASE;
+    }
+}
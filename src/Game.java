@@ -0,0 +1,238 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Headless game state: position, clocks, captured material, result and the
+ * running match score. No JavaFX here, so a game can be hosted on a server,
+ * driven by an engine or exercised in a benchmark without a UI toolkit.
+ */
+public class Game {
+    public enum Status {
+        ONGOING, CHECKMATE, STALEMATE, THREEFOLD_REPETITION, FIFTY_MOVE_RULE, RESIGNATION, TIMEOUT;
+
+        public boolean isDraw() {
+            return this == STALEMATE || this == THREEFOLD_REPETITION || this == FIFTY_MOVE_RULE;
+        }
+    }
+
+    public static final int DEFAULT_TIME_SECONDS = 600;
+    public static final int NO_WINNER = -1;
+    // Most network delay credited back for a single move
+    public static final long MAX_LAG_CREDIT_MILLIS = 2000;
+
+    private final ChessClock clock;
+    private final int[] points = new int[2];
+    private final List<List<Integer>> captured = List.of(new ArrayList<>(), new ArrayList<>());
+    private final int[] wins = new int[2];
+
+    private Position position;
+    // The legal moves of the current position, generated once when it is reached
+    private LegalMoves legal;
+    private int[] history = new int[256];
+    private int moveCount;
+    private Status status;
+    private int winner;
+
+    public Game() {
+        this(TimeControl.DEFAULT);
+    }
+
+    public Game(TimeControl timeControl) {
+        this(new ChessClock(timeControl));
+    }
+
+    public Game(ChessClock clock) {
+        this.clock = clock;
+        reset();
+    }
+
+    // Starts a new game; the match score is kept
+    public final void reset() {
+        position = Position.startPosition();
+        legal = LegalMoves.of(position);
+        points[Piece.WHITE] = points[Piece.BLACK] = 0;
+        captured.get(Piece.WHITE).clear();
+        captured.get(Piece.BLACK).clear();
+        moveCount = 0;
+        status = Status.ONGOING;
+        winner = NO_WINNER;
+        clock.reset();
+        clock.start(Piece.WHITE);
+    }
+
+    // The live position; callers must not modify it
+    public Position position() {
+        return position;
+    }
+
+    public int sideToMove() {
+        return position.sideToMove();
+    }
+
+    public boolean isInCheck() {
+        return legal.isInCheck();
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public boolean isOver() {
+        return status != Status.ONGOING;
+    }
+
+    public int winner() {
+        return winner;
+    }
+
+    public int legalMoves(int[] moves) {
+        return legalMoves().copyTo(moves);
+    }
+
+    // Shared and immutable; empty once the game is over
+    public LegalMoves legalMoves() {
+        return isOver() ? LegalMoves.NONE : legal;
+    }
+
+    // Legal move between two squares, or Move.NONE; promotions default to a queen
+    public int findMove(int from, int to) {
+        return findMove(from, to, Piece.QUEEN);
+    }
+
+    public int findMove(int from, int to, int promotionType) {
+        return legalMoves().find(from, to, promotionType);
+    }
+
+    public boolean isLegal(int move) {
+        return legalMoves().contains(move);
+    }
+
+    // Plays a legal move and updates clocks, captured material and the game status.
+    // A move made after the mover's flag fell loses on time instead.
+    public boolean applyMove(int move) {
+        if (!isLegal(move)) return false;
+        int mover = position.sideToMove();
+        if (!clock.press()) {
+            finish(Status.TIMEOUT, mover ^ 1);
+            return false;
+        }
+        int to = Move.to(move);
+        int victim = Move.isEnPassant(move)
+                ? position.pieceAt(to + (mover == Piece.WHITE ? -8 : 8))
+                : position.pieceAt(to);
+        position.makeMove(move);
+        legal = LegalMoves.of(position);
+        if (victim != Piece.NONE) {
+            points[mover] += pieceValue(victim);
+            captured.get(mover).add(victim);
+        }
+        if (moveCount == history.length) history = java.util.Arrays.copyOf(history, moveCount * 2);
+        history[moveCount++] = move;
+        updateStatus();
+        return true;
+    }
+
+    private void updateStatus() {
+        int side = position.sideToMove();
+        if (legal.count() == 0) {
+            if (legal.isInCheck()) {
+                finish(Status.CHECKMATE, side ^ 1);
+            } else {
+                finish(Status.STALEMATE, NO_WINNER);
+            }
+        } else if (position.isThreefoldRepetition()) {
+            finish(Status.THREEFOLD_REPETITION, NO_WINNER);
+        } else if (position.isFiftyMoveDraw()) {
+            finish(Status.FIFTY_MOVE_RULE, NO_WINNER);
+        }
+    }
+
+    public void resign(int color) {
+        if (!isOver()) finish(Status.RESIGNATION, color ^ 1);
+    }
+
+    // Ends the game with a result decided by an authoritative peer, e.g. a server's flag-fall
+    public void declareResult(Status result, int winningColor) {
+        if (!isOver() && result != Status.ONGOING) finish(result, winningColor);
+    }
+
+    // Ends the game if the side to move has run out of time; true once the game is over
+    public boolean checkTime() {
+        if (!isOver() && clock.flagFallen()) {
+            finish(Status.TIMEOUT, position.sideToMove() ^ 1);
+        }
+        return isOver();
+    }
+
+    // System.nanoTime at which the side to move loses on time
+    public long flagDeadlineNanos() {
+        return clock.deadlineNanos();
+    }
+
+    // Gives back time a clock was charged while a move was in transit, capped per move
+    public void creditLag(int color, long millis) {
+        if (isOver() || millis <= 0) return;
+        clock.credit(color, Math.min(millis, MAX_LAG_CREDIT_MILLIS) * 1_000_000L);
+    }
+
+    // Adopts the remaining times of an authoritative peer, e.g. after a reconnect
+    public void syncClock(long whiteMillis, long blackMillis) {
+        if (isOver()) return;
+        clock.set(Piece.WHITE, whiteMillis * 1_000_000L);
+        clock.set(Piece.BLACK, blackMillis * 1_000_000L);
+    }
+
+    private void finish(Status result, int winningColor) {
+        status = result;
+        winner = winningColor;
+        clock.stop();
+        if (winningColor != NO_WINNER) wins[winningColor]++;
+    }
+
+    // Whole seconds, rounded up so a clock shows 00:00 only once it has run out
+    public int timeLeft(int color) {
+        return (int) ((clock.remainingMillis(color) + 999) / 1000);
+    }
+
+    public long timeLeftMillis(int color) {
+        return clock.remainingMillis(color);
+    }
+
+    public TimeControl timeControl() {
+        return clock.timeControl();
+    }
+
+    public int points(int color) {
+        return points[color];
+    }
+
+    // Pieces captured by the given colour, in capture order
+    public List<Integer> captured(int color) {
+        return Collections.unmodifiableList(captured.get(color));
+    }
+
+    public int wins(int color) {
+        return wins[color];
+    }
+
+    public int moveCount() {
+        return moveCount;
+    }
+
+    public int moveAt(int index) {
+        return history[index];
+    }
+
+    public static int pieceValue(int piece) {
+        if (piece == Piece.NONE) return 0;
+        switch (Piece.type(piece)) {
+            case Piece.PAWN: return 1;
+            case Piece.KNIGHT:
+            case Piece.BISHOP: return 3;
+            case Piece.ROOK: return 5;
+            case Piece.QUEEN: return 9;
+            default: return 0;
+        }
+    }
+}
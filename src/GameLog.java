@@ -0,0 +1,69 @@
+import java.util.Arrays;
+
+/**
+ * The game events (MOVE, RESIGN, RESULT, NEW_GAME) one side has sent to its
+ * peer, so a peer that reconnects can be sent exactly what it missed. Each
+ * direction of a session numbers its events on its own, from 1. The log only
+ * reaches back to the last NEW_GAME, which is kept as its first entry.
+ *
+ * Each event is packed into one long: sequence in the low 32 bits, type and
+ * a 16-bit payload above it (the wire move, the resigning colour, or the
+ * status ordinal and winner of a result). Not thread-safe.
+ */
+final class GameLog {
+    interface Sink {
+        void event(int sequence, int type, int data);
+    }
+
+    private long[] events = new long[64];
+    private int size;
+    private int lastSequence;
+
+    int lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Replays every event after the given sequence number. A peer that is
+     * behind the start of the current game gets the whole game, NEW_GAME
+     * marker first, and so resets; one that claims to be ahead gets nothing.
+     */
+    void replay(int afterSequence, Sink sink) {
+        for (int i = 0; i < size; i++) {
+            int sequence = (int) events[i];
+            if (sequence > afterSequence) sink.event(sequence, type(events[i]), (int) (events[i] >>> 40) & 0xFFFF);
+        }
+    }
+
+    // Records a new event and returns its sequence number
+    int append(int type, int data) {
+        int sequence = lastSequence + 1;
+        if (type == Protocol.NEW_GAME) size = 0;
+        if (size == events.length) events = Arrays.copyOf(events, size * 2);
+        events[size++] = (sequence & 0xFFFFFFFFL) | (long) type << 32 | (long) (data & 0xFFFF) << 40;
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    private static int type(long event) {
+        return (int) (event >>> 32) & 0xFF;
+    }
+
+    // Whether a received event is the next one after lastReceived; a NEW_GAME may skip ahead
+    static boolean follows(int sequence, int type, int lastReceived) {
+        return sequence == lastReceived + 1 || type == Protocol.NEW_GAME && sequence > lastReceived;
+    }
+
+    static int result(Game.Status status, int winner) {
+        return status.ordinal() << 8 | (winner == Game.NO_WINNER ? Protocol.NO_WINNER : winner);
+    }
+
+    static Game.Status status(int result) {
+        return Game.Status.values()[result >>> 8];
+    }
+
+    static int winner(int result) {
+        int winner = result & 0xFF;
+        return winner == Protocol.NO_WINNER ? Game.NO_WINNER : winner;
+    }
+}
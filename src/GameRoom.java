@@ -0,0 +1,229 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two paired sessions and the authoritative game between them. Frames from
+ * either session arrive on their own event loop, so all handling is
+ * synchronized on the room. Moves are checked against the server's Game
+ * before being relayed; names, resignations and results are passed through.
+ * The side to move's flag-fall deadline sits on the server's shared
+ * {@link TimerWheel}, so a player who stops moving loses on time even
+ * though no frame arrives. A mover's clock is credited the one-way lag of
+ * their connection, as the clients credit it, and the deadline waits that
+ * long for a move still in transit.
+ *
+ * Game events are renumbered for each player and kept in the session's
+ * {@link GameLog}. A player who drops keeps the seat for a grace period:
+ * reconnecting with the session token replays what was missed and the
+ * clocks, and only once the grace period runs out is the opponent told
+ * the absent player resigned.
+ *
+ * Spectators follow the room through its {@link Broadcast}, which the room
+ * feeds with every move and result.
+ */
+final class GameRoom {
+    static final long RESUME_GRACE_MILLIS = NetworkConnection.DEFAULT_RECONNECT_MILLIS;
+
+    private final Lobby lobby;
+    private final int id;
+    private final Broadcast broadcast = new Broadcast();
+    private final ServerSession[] seats = new ServerSession[2];
+    private final long[] tokens = new long[2];
+    private final TimerWheel.Timeout[] graceTimeouts = new TimerWheel.Timeout[2];
+    private final Game game;
+    private final TimerWheel timers;
+    private TimerWheel.Timeout flagTimeout;
+    private boolean closed;
+
+    GameRoom(Lobby lobby, int id, TimerWheel timers, TimeControl timeControl, ServerSession white, ServerSession black) {
+        this.lobby = lobby;
+        this.id = id;
+        this.timers = timers;
+        this.game = new Game(timeControl);
+        seats[Piece.WHITE] = white;
+        seats[Piece.BLACK] = black;
+        tokens[Piece.WHITE] = white.token;
+        tokens[Piece.BLACK] = black.token;
+    }
+
+    synchronized void start() {
+        for (int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            seats[color].room = this;
+            seats[color].color = color;
+            seats[color].sendColor(color);
+            deliver(color, Protocol.NEW_GAME, 0);
+        }
+        for (int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            byte[] name = seats[color ^ 1].nameFrame;
+            if (name != null) seats[color].sendFrame(name);
+        }
+        scheduleFlag();
+    }
+
+    int id() {
+        return id;
+    }
+
+    long token(int color) {
+        return tokens[color];
+    }
+
+    // Called on the spectator's event loop; false once the room has closed
+    boolean watch(ServerSession spectator) {
+        synchronized (this) {
+            if (closed) return false;
+        }
+        spectator.watch(broadcast);
+        return true;
+    }
+
+    // Caller holds the room lock
+    private void scheduleFlag() {
+        if (flagTimeout != null) flagTimeout.cancel();
+        if (closed || game.isOver()) {
+            flagTimeout = null;
+            return;
+        }
+        long lagMillis = Math.min(seats[game.sideToMove()].oneWayLatencyMillis(), Game.MAX_LAG_CREDIT_MILLIS);
+        flagTimeout = timers.schedule(game.flagDeadlineNanos() + TimeUnit.MILLISECONDS.toNanos(lagMillis), this::onFlag);
+    }
+
+    // Runs on the timer wheel thread
+    private synchronized void onFlag() {
+        if (closed) return;
+        if (game.checkTime()) announceTimeout();
+        scheduleFlag();
+    }
+
+    // Caller holds the room lock
+    private void announceTimeout() {
+        int result = GameLog.result(game.status(), game.winner());
+        deliver(Piece.WHITE, Protocol.RESULT, result);
+        deliver(Piece.BLACK, Protocol.RESULT, result);
+        broadcast.publish(Protocol.RESULT, result);
+        newGame();
+    }
+
+    // Clients start over once they see the result; caller holds the room lock
+    private void newGame() {
+        game.reset();
+        deliver(Piece.WHITE, Protocol.NEW_GAME, 0);
+        deliver(Piece.BLACK, Protocol.NEW_GAME, 0);
+        broadcast.publish(Protocol.NEW_GAME, 0);
+    }
+
+    // Logs an event for a seat and sends it if the seat is connected; caller holds the room lock
+    private void deliver(int color, int type, int data) {
+        int sequence = seats[color].sent.append(type, data);
+        seats[color].sendEvent(sequence, type, data);
+    }
+
+    synchronized void onFrame(ServerSession from, ByteBuffer buffer, int offset, int length) {
+        if (closed || seats[from.color] != from) return;
+        int color = from.color;
+        int type = Protocol.type(buffer, offset);
+        if (Protocol.isGameEvent(type)) {
+            int sequence = Protocol.sequence(buffer, offset);
+            // Duplicates from a resend after reconnecting are dropped here
+            if (!GameLog.follows(sequence, type, from.received)) return;
+            from.received = sequence;
+        }
+
+        switch (type) {
+            case Protocol.MOVE:
+                int wireMove = Protocol.move(buffer, offset);
+                int move = game.sideToMove() == color ? Protocol.resolve(game, wireMove) : Move.NONE;
+                // The server's clock ran on while the move was in transit; the mover's own didn't
+                if (move != Move.NONE) game.creditLag(color, from.oneWayLatencyMillis());
+                if (move == Move.NONE || !game.applyMove(move)) {
+                    if (game.isOver()) {
+                        // The move came in after the mover's flag fell
+                        announceTimeout();
+                        scheduleFlag();
+                    } else {
+                        System.err.println("Dropping illegal move from " + from.describe());
+                    }
+                    return;
+                }
+                deliver(color ^ 1, Protocol.MOVE, wireMove);
+                broadcast.publishMove(move);
+                if (game.isOver()) newGame();
+                scheduleFlag();
+                break;
+            case Protocol.RESIGN:
+                game.resign(color);
+                deliver(color ^ 1, Protocol.RESIGN, color);
+                broadcast.publish(Protocol.RESIGN, color);
+                newGame();
+                scheduleFlag();
+                break;
+            case Protocol.NAME:
+                byte[] frame = new byte[length + 2];
+                buffer.get(offset - 2, frame);
+                from.nameFrame = frame;
+                seats[color ^ 1].send(buffer, offset, length);
+                break;
+            case Protocol.RESULT:
+                deliver(color ^ 1, Protocol.RESULT, Protocol.eventData(buffer, offset));
+                break;
+            default:
+                // The server starts new games itself; HELLO and COLOR only ever come from the server
+                break;
+        }
+    }
+
+    /**
+     * Puts a reconnecting player back in their seat: answers the HELLO,
+     * replays the events sent since peerSequence and the opponent's name,
+     * then the clocks. False if the room has already closed.
+     */
+    synchronized boolean resume(ServerSession session, long token, int peerSequence) {
+        if (closed) return false;
+        int color = token == tokens[Piece.WHITE] ? Piece.WHITE : Piece.BLACK;
+        ServerSession previous = seats[color];
+        if (previous != session) {
+            // A connection that hasn't noticed it is dead yet must not vacate the seat again
+            previous.room = null;
+            previous.loop.execute(previous::close);
+            session.sent = previous.sent;
+            session.received = previous.received;
+        }
+        if (graceTimeouts[color] != null) graceTimeouts[color].cancel();
+        graceTimeouts[color] = null;
+        seats[color] = session;
+        session.room = this;
+        session.color = color;
+        session.token = token;
+        session.sendHello(token, session.received);
+        session.sent.replay(peerSequence, session::sendEvent);
+        byte[] name = seats[color ^ 1].nameFrame;
+        if (name != null) session.sendFrame(name);
+        session.sendClock(game.timeLeftMillis(Piece.WHITE), game.timeLeftMillis(Piece.BLACK));
+        return true;
+    }
+
+    // The seat is held for the grace period; the game and its clocks go on meanwhile
+    synchronized void onDisconnect(ServerSession session) {
+        if (closed || seats[session.color] != session) return;
+        int color = session.color;
+        graceTimeouts[color] = timers.scheduleAfter(RESUME_GRACE_MILLIS, TimeUnit.MILLISECONDS, () -> abandon(color));
+    }
+
+    // The remaining player is told the absent one resigned and goes back to the lobby
+    private synchronized void abandon(int color) {
+        if (closed || seats[color].isOpen()) return;
+        closed = true;
+        if (flagTimeout != null) flagTimeout.cancel();
+        if (graceTimeouts[color ^ 1] != null) graceTimeouts[color ^ 1].cancel();
+        lobby.roomClosed(this);
+        broadcast.publish(Protocol.RESIGN, color);
+        broadcast.close();
+        ServerSession other = seats[color ^ 1];
+        seats[color].room = null;
+        other.room = null;
+        if (other.isOpen()) {
+            deliver(color ^ 1, Protocol.RESIGN, color);
+            lobby.join(other);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dedicated game server: one acceptor thread hands connections round-robin
+ * to a small pool of selector event loops. Players wait in a {@link Lobby}
+ * until paired into a {@link GameRoom}, which validates and relays their
+ * frames. Clients speak the same {@link Protocol} as a peer-to-peer
+ * {@link Server} and are told their colour with a COLOR frame.
+ *
+ * Clients ping while connected, so a session that has sent nothing for
+ * {@link #IDLE_TIMEOUT_MILLIS} is presumed dead and closed, which resigns
+ * its game. The server pings its players every heartbeat too, to measure
+ * the lag it credits to their clocks.
+ *
+ * Flag-fall for every game is scheduled on one {@link TimerWheel}.
+ *
+ * Usage: java GameServer [port] [eventLoops] [timeControl, e.g. 10+5]
+ */
+public class GameServer {
+    public static final int DEFAULT_PORT = 55555;
+    public static final long IDLE_TIMEOUT_MILLIS = NetworkConnection.DEFAULT_TIMEOUT_MILLIS;
+    // Also the heartbeat: each sweep pings every player
+    private static final long SWEEP_MILLIS = NetworkConnection.DEFAULT_HEARTBEAT_MILLIS;
+
+    private final int port;
+    private final EventLoop[] loops;
+    // 10 ms ticks: flags fall at most one tick late
+    private static final long TIMER_TICK_MILLIS = 10;
+
+    private final TimerWheel timers = new TimerWheel(TIMER_TICK_MILLIS, "game-timers");
+    private final Lobby lobby;
+    private volatile boolean running;
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+    private int nextLoop;
+
+    public GameServer(int port, int loopCount) {
+        this(port, loopCount, TimeControl.DEFAULT);
+    }
+
+    public GameServer(int port, int loopCount, TimeControl timeControl) {
+        this.port = port;
+        this.loops = new EventLoop[loopCount];
+        this.lobby = new Lobby(timeControl, timers);
+    }
+
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        running = true;
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("game-loop-" + i);
+            loops[i].start();
+        }
+        acceptor = new Thread(this::acceptLoop, "game-acceptor");
+        acceptor.start();
+    }
+
+    // Actual bound port, useful when started on port 0
+    public int port() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    public Lobby lobby() {
+        return lobby;
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+        }
+        for (EventLoop loop : loops) {
+            if (loop != null) loop.shutdown();
+        }
+        timers.stop();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                EventLoop loop = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                loop.execute(() -> loop.register(channel));
+            } catch (IOException e) {
+                if (running) e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Single-threaded selector loop. Other threads hand it work through
+     * {@link #execute}, which is how frames relayed from a session on a
+     * different loop get flushed by the loop that owns the target socket.
+     */
+    final class EventLoop extends Thread {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        EventLoop(String name) throws IOException {
+            super(name);
+            setDaemon(true);
+            selector = Selector.open();
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        boolean inLoop() {
+            return Thread.currentThread() == this;
+        }
+
+        void register(SocketChannel channel) {
+            try {
+                ServerSession session = new ServerSession(channel, this, lobby);
+                session.key = channel.register(selector, SelectionKey.OP_READ, session);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void sweepSessions() {
+            long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MILLIS);
+            for (SelectionKey key : selector.keys()) {
+                ServerSession session = (ServerSession) key.attachment();
+                if (session.lastReadNanos - deadline < 0) {
+                    System.err.println("Closing idle session " + session.describe());
+                    session.close();
+                } else {
+                    session.ping();
+                }
+            }
+        }
+
+        // The loop closes its own selector, so it is never closed under an iteration
+        void shutdown() {
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long nextSweep = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SWEEP_MILLIS);
+            try {
+                while (running) {
+                    selector.select(SWEEP_MILLIS);
+                    if (System.nanoTime() - nextSweep >= 0) {
+                        sweepSessions();
+                        nextSweep = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SWEEP_MILLIS);
+                    }
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        ServerSession session = (ServerSession) key.attachment();
+                        if (!key.isValid()) continue;
+                        if (key.isReadable()) session.onReadable();
+                        if (key.isValid() && key.isWritable()) session.flush();
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                // stopped
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int loops = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        TimeControl timeControl = args.length > 2 ? TimeControl.parse(args[2]) : TimeControl.DEFAULT;
+        GameServer server = new GameServer(port, loops, timeControl);
+        server.start();
+        System.out.println("Game server listening on port " + server.port() + " with " + loops
+                + " event loops, time control " + timeControl);
+    }
+}
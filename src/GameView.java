@@ -0,0 +1,96 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable snapshot of a {@link Game}: everything the board and panels
+ * draw. Taken on the thread that owns the game and handed to the FX thread,
+ * which never touches the game itself.
+ */
+final class GameView {
+    private final int[] pieces = new int[64];
+    private final int sideToMove;
+    private final boolean inCheck;
+    private final Game.Status status;
+    private final int winner;
+    private final LegalMoves legalMoves;
+    private final int[] points = new int[2];
+    private final int[] wins = new int[2];
+    private final int[] timeLeft = new int[2];
+    private final List<List<Integer>> captured;
+
+    private GameView(Game game) {
+        Position position = game.position();
+        for (int square = 0; square < 64; square++) {
+            pieces[square] = position.pieceAt(square);
+        }
+        sideToMove = game.sideToMove();
+        inCheck = game.isInCheck();
+        status = game.status();
+        winner = game.winner();
+        legalMoves = game.legalMoves();
+        for (int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            points[color] = game.points(color);
+            wins[color] = game.wins(color);
+            timeLeft[color] = game.timeLeft(color);
+        }
+        captured = List.of(List.copyOf(game.captured(Piece.WHITE)), List.copyOf(game.captured(Piece.BLACK)));
+    }
+
+    static GameView of(Game game) {
+        return new GameView(game);
+    }
+
+    int pieceAt(int row, int col) {
+        return pieces[Bitboards.square(row, col)];
+    }
+
+    int pieceAt(int square) {
+        return pieces[square];
+    }
+
+    // Same pieces and side to move, so the board needn't be redrawn
+    boolean samePosition(GameView other) {
+        return sideToMove == other.sideToMove && Arrays.equals(pieces, other.pieces);
+    }
+
+    int sideToMove() {
+        return sideToMove;
+    }
+
+    boolean isInCheck() {
+        return inCheck;
+    }
+
+    Game.Status status() {
+        return status;
+    }
+
+    boolean isOver() {
+        return status != Game.Status.ONGOING;
+    }
+
+    int winner() {
+        return winner;
+    }
+
+    LegalMoves legalMoves() {
+        return legalMoves;
+    }
+
+    int points(int color) {
+        return points[color];
+    }
+
+    int wins(int color) {
+        return wins[color];
+    }
+
+    // Whole seconds when the snapshot was taken
+    int timeLeft(int color) {
+        return timeLeft[color];
+    }
+
+    List<Integer> captured(int color) {
+        return captured.get(color);
+    }
+}
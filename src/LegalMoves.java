@@ -0,0 +1,70 @@
+import java.util.Arrays;
+
+/**
+ * Every legal move of one position, generated once. Immutable, so it can be
+ * built on any thread from a private copy of the position and read from any
+ * other. Answers move lookup, the target squares of a piece, check and
+ * whether the side to move has any move at all.
+ */
+public final class LegalMoves {
+    public static final LegalMoves NONE = new LegalMoves(new int[0], false);
+
+    private final int[] moves;
+    private final boolean inCheck;
+    // Destination squares by origin square
+    private final long[] targets = new long[64];
+
+    private LegalMoves(int[] moves, boolean inCheck) {
+        this.moves = moves;
+        this.inCheck = inCheck;
+        for (int move : moves) {
+            targets[Move.from(move)] |= Bitboards.bit(Move.to(move));
+        }
+    }
+
+    public static LegalMoves of(Position position) {
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(position, buffer);
+        return new LegalMoves(Arrays.copyOf(buffer, count), position.isInCheck(position.sideToMove()));
+    }
+
+    public int count() {
+        return moves.length;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public boolean isInCheck() {
+        return inCheck;
+    }
+
+    public boolean contains(int move) {
+        for (int m : moves) {
+            if (m == move) return true;
+        }
+        return false;
+    }
+
+    public long targets(int from) {
+        return targets[from];
+    }
+
+    // Legal move between two squares, or Move.NONE
+    public int find(int from, int to, int promotionType) {
+        if ((targets[from] & Bitboards.bit(to)) == 0) return Move.NONE;
+        for (int move : moves) {
+            if (Move.from(move) == from && Move.to(move) == to
+                    && (!Move.isPromotion(move) || Move.promotionType(move) == promotionType)) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    public int copyTo(int[] buffer) {
+        System.arraycopy(moves, 0, buffer, 0, moves.length);
+        return moves.length;
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pairs waiting players into games, first come first served. The player
+ * who waited gets White. Open rooms are also found by their players'
+ * session tokens, so a player who reconnects goes back to their game, and
+ * by number for spectators.
+ */
+public final class Lobby {
+    private final AtomicInteger activeRooms = new AtomicInteger();
+    private final TimeControl timeControl;
+    private final TimerWheel timers;
+    private final Map<Long, GameRoom> roomsByToken = new ConcurrentHashMap<>();
+    private final Map<Integer, GameRoom> roomsById = new ConcurrentHashMap<>();
+    private int nextRoomId = 1;
+    private volatile GameRoom newestRoom;
+    private ServerSession waiting;
+
+    Lobby(TimeControl timeControl, TimerWheel timers) {
+        this.timeControl = timeControl;
+        this.timers = timers;
+    }
+
+    synchronized void join(ServerSession session) {
+        if (!session.isOpen()) return;
+        if (waiting != null && waiting.isOpen() && waiting != session) {
+            GameRoom room = new GameRoom(this, nextRoomId++, timers, timeControl, waiting, session);
+            waiting = null;
+            activeRooms.incrementAndGet();
+            roomsByToken.put(room.token(Piece.WHITE), room);
+            roomsByToken.put(room.token(Piece.BLACK), room);
+            roomsById.put(room.id(), room);
+            newestRoom = room;
+            room.start();
+        } else {
+            waiting = session;
+        }
+    }
+
+    // Not synchronized: the room's lock is taken inside, and rooms call join while holding it
+    boolean resume(ServerSession session, long token, int lastSequence) {
+        GameRoom room = roomsByToken.get(token);
+        return room != null && room.resume(session, token, lastSequence);
+    }
+
+    void roomClosed(GameRoom room) {
+        activeRooms.decrementAndGet();
+        roomsByToken.remove(room.token(Piece.WHITE), room);
+        roomsByToken.remove(room.token(Piece.BLACK), room);
+        roomsById.remove(room.id());
+    }
+
+    // An open room to watch; 0 stands for the most recently started one
+    GameRoom room(int id) {
+        return id == 0 ? newestRoom : roomsById.get(id);
+    }
+
+    public int activeRooms() {
+        return activeRooms.get();
+    }
+}
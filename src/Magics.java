@@ -0,0 +1,99 @@
+/**
+ * Fancy magic bitboards for rook and bishop attacks. Magic numbers are found
+ * at class initialisation with a fixed seed, so the tables are identical on
+ * every run and a lookup is one mask, one multiply and one shift.
+ */
+final class Magics {
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE = new long[102400];
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] BISHOP_TABLE = new long[5248];
+
+    private static long seed = 0x2545F4914F6CDD1DL;
+
+    static {
+        init(true, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS, ROOK_TABLE);
+        init(false, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS, BISHOP_TABLE);
+    }
+
+    private Magics() {
+    }
+
+    static long rookAttacks(int square, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSETS[square]
+                + (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    static long bishopAttacks(int square, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSETS[square]
+                + (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    private static void init(boolean rook, long[] masks, long[] magics, int[] shifts, int[] offsets, long[] table) {
+        long[] occupancies = new long[4096];
+        long[] reference = new long[4096];
+        int[] epoch = new int[4096];
+        int attempt = 0;
+        int offset = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            long edges = ((Bitboards.RANK_1 | Bitboards.RANK_8) & ~(Bitboards.RANK_1 << (8 * Bitboards.rank(sq))))
+                    | ((Bitboards.FILE_A | Bitboards.FILE_H) & ~(Bitboards.FILE_A << Bitboards.file(sq)));
+            long mask = slidingAttacks(rook, sq, 0) & ~edges;
+            int bits = Long.bitCount(mask);
+            masks[sq] = mask;
+            shifts[sq] = 64 - bits;
+            offsets[sq] = offset;
+
+            // Enumerate every subset of the mask (carry-rippler)
+            int size = 0;
+            long subset = 0;
+            do {
+                occupancies[size] = subset;
+                reference[size] = slidingAttacks(rook, sq, subset);
+                size++;
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+
+            search:
+            while (true) {
+                long magic = sparseRandom();
+                if (Long.bitCount((mask * magic) >>> 56) < 6) continue;
+                attempt++;
+                for (int i = 0; i < size; i++) {
+                    int index = (int) ((occupancies[i] * magic) >>> shifts[sq]);
+                    if (epoch[index] < attempt) {
+                        epoch[index] = attempt;
+                        table[offset + index] = reference[i];
+                    } else if (table[offset + index] != reference[i]) {
+                        continue search;
+                    }
+                }
+                magics[sq] = magic;
+                break;
+            }
+            offset += size;
+        }
+    }
+
+    private static long slidingAttacks(boolean rook, int square, long occupied) {
+        return rook ? Bitboards.slidingRookAttacks(square, occupied) : Bitboards.slidingBishopAttacks(square, occupied);
+    }
+
+    private static long sparseRandom() {
+        return random() & random() & random();
+    }
+
+    private static long random() {
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 2685821657736338717L;
+    }
+}
@@ -6,6 +6,8 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
@@ -16,8 +18,12 @@ import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
 import javafx.util.Duration;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
 
@@ -28,26 +34,45 @@ public class Main extends Application {
     private static final int HEIGHT = 8;
 
     private Tile[][] board = new Tile[HEIGHT][WIDTH];
-    private String[][] piecePositions = new String[HEIGHT][WIDTH];
+    // Drawn instead of the tiles with -Dchess.board=canvas
+    private BoardCanvas boardCanvas;
+    // Owned by the rules thread: frames and clicks are applied there, off the FX thread
+    private final Game game = new Game(TimeControl.configured());
+    private final ExecutorService rules = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "rules");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // The newest snapshot the FX thread hasn't picked up yet, and the one on screen
+    private final AtomicReference<GameView> pendingView = new AtomicReference<>();
+    private GameView view;
     private int selectedRow = -1, selectedCol = -1;
-    private String currentPlayer = "w";
-    private boolean gameOver = false;
-    private String gameResult = "";
-    private int whiteScore = 0;
-    private int blackScore = 0;
     private boolean isServer = false;
+    private volatile int myColor = Piece.WHITE;
 
     private Text gameStatusText = new Text();
     private Text timerText = new Text("10:00");
 
     private NetworkConnection connection;
-    private boolean isMyTurn = false;
+    // Set instead of a connection when playing against the computer
+    private EnginePlayer engine;
+    private Text engineInfoText;
+    // Optional analysis during the opponent's turn; the analyzer belongs to the rules thread
+    private Analyzer analyzer;
+    private volatile boolean analysing;
+    private final AtomicReference<Runnable> pendingAnalysis = new AtomicReference<>();
+    private CheckBox analysisToggle;
+    private ProgressBar evalBar;
+    private Text analysisText;
+    // Book moves are shown instead of analysis while the game is in the book
+    private final OpeningBook book = OpeningBook.configured();
+    // Game events we sent, for resending after a reconnect, and the last one received
+    private GameLog sentEvents = new GameLog();
+    private volatile int lastReceived;
 
     private String myName = "Player";
     private String opponentName = "Opponent";
 
-    private int whiteTotalTime = 600;  // Total time for White in seconds (10 minutes)
-    private int blackTotalTime = 600;  // Total time for Black in seconds (10 minutes)
     private Timeline timer;
 
     private Button resignButton;
@@ -56,31 +81,33 @@ public class Main extends Application {
     private Text whiteTimerText;
     private Text blackTimerText;
 
-    private int whitePoints = 0;
-    private int blackPoints = 0;
     private Text whitePointsText;
     private Text blackPointsText;
 
-    private List<String> capturedByWhite = new ArrayList<>();
-    private List<String> capturedByBlack = new ArrayList<>();
     private VBox capturedWhiteBox;
     private VBox capturedBlackBox;
 
+    private enum Role { SERVER, CLIENT, ENGINE }
+
     @Override
     public void start(Stage primaryStage) {
-        boolean isServer = askIfServer();
-        this.isServer = isServer;
-        isMyTurn = isServer;
+        Role role = askRole();
+        this.isServer = role == Role.SERVER;
+        myColor = role == Role.CLIENT ? Piece.BLACK : Piece.WHITE;
+        String colorName = myColor == Piece.WHITE ? "White" : "Black";
 
-        TextInputDialog nameDialog = new TextInputDialog(isServer ? "White" : "Black");
+        TextInputDialog nameDialog = new TextInputDialog(colorName);
         nameDialog.setTitle("Enter Your Name");
-        nameDialog.setHeaderText("You're playing as " + (isServer ? "White" : "Black"));
+        nameDialog.setHeaderText("You're playing as " + colorName);
         nameDialog.setContentText("Enter your name:");
         Optional<String> nameResult = nameDialog.showAndWait();
-        myName = nameResult.orElse(isServer ? "White" : "Black");
+        myName = nameResult.orElse(colorName);
 
-        if (isServer) {
-            connection = new Server(this::receiveMove);
+        if (role == Role.ENGINE) {
+            opponentName = "Engine";
+            engine = new EnginePlayer(myColor ^ 1, book, result -> Platform.runLater(() -> showEngineInfo(result)));
+        } else if (isServer) {
+            connection = new Server(this::receiveFrame, NetworkConnection.ThreadMode.configured());
         } else {
             TextInputDialog ipDialog = new TextInputDialog("localhost");
             ipDialog.setTitle("Enter Server IP");
@@ -88,22 +115,25 @@ public class Main extends Application {
             ipDialog.setContentText("Enter server IP address:");
             Optional<String> ipResult = ipDialog.showAndWait();
             String ip = ipResult.orElse("localhost");
-            connection = new Client(ip, this::receiveMove);
+            connection = new Client(ip, this::receiveFrame, NetworkConnection.ThreadMode.configured());
         }
 
-        try {
-            connection.start();
+        if (connection != null) {
+            connection.setDisconnectHandler(e -> Platform.runLater(() -> onDisconnected(e)));
+            connection.setLastSequence(() -> lastReceived);
+            // Queued behind any frames already handed to the rules thread, so events stay in order
+            connection.setSessionHandler((resumed, peerSequence) -> rules.execute(() -> onSession(resumed, peerSequence)));
+            try {
+                connection.start();
+
+                // ✅ Wait until the connection is fully ready
+                while (!connection.isReady()) {
+                    Thread.sleep(50); // Wait for the socket and streams to be initialized
+                }
 
-            // ✅ Wait until the connection is fully ready
-            while (!connection.isReady()) {
-                Thread.sleep(50); // Wait for the socket and streams to be initialized
+            } catch (Exception e) {
+                e.printStackTrace();
             }
-
-            // ✅ Now it's safe to send
-            connection.send("NAME " + myName);
-
-        } catch (Exception e) {
-            e.printStackTrace();
         }
 
         // Set up the timer and display
@@ -113,19 +143,21 @@ public class Main extends Application {
 
         gameStatusText.setFont(Font.font("Arial", FontWeight.BOLD, 24));
         gameStatusText.setFill(Color.DARKRED);
-        initializePieces();
 
-        for (int row = 0; row < HEIGHT; row++) {
-            for (int col = 0; col < WIDTH; col++) {
-                Tile tile = new Tile(row, col);
-                board[row][col] = tile;
-                grid.add(tile.getStack(), col, row);
+        if ("canvas".equalsIgnoreCase(System.getProperty("chess.board"))) {
+            boardCanvas = new BoardCanvas(TILE_SIZE, this::onSquareClicked);
+            grid.add(boardCanvas.node(), 0, 0, WIDTH, HEIGHT);
+        } else {
+            for (int row = 0; row < HEIGHT; row++) {
+                for (int col = 0; col < WIDTH; col++) {
+                    Tile tile = new Tile(row, col);
+                    board[row][col] = tile;
+                    grid.add(tile.getStack(), col, row);
+                }
             }
         }
 
         grid.add(gameStatusText, 0, HEIGHT, WIDTH, 1);
-        updateBoard();
-        gameStatusText.setText(isMyTurn ? myName + "'s turn" : opponentName + "'s turn");
 
         // Create control panel with buttons
         controlPanel = new VBox(10);
@@ -137,6 +169,31 @@ public class Main extends Application {
         resignButton.setOnAction(e -> handleResign());
         controlPanel.getChildren().clear();
         controlPanel.getChildren().addAll(resignButton);
+        if (engine != null) {
+            engineInfoText = new Text("Engine: waiting");
+            engineInfoText.setFont(Font.font("Arial", 12));
+            controlPanel.getChildren().add(engineInfoText);
+        }
+
+        // White's share of the evaluation, filled from the left
+        analysisToggle = new CheckBox("Analyse opponent's turn");
+        evalBar = new ProgressBar(0.5);
+        evalBar.setPrefWidth(120);
+        analysisText = new Text();
+        analysisText.setFont(Font.font("Arial", 12));
+        evalBar.setVisible(false);
+        analysisText.setVisible(false);
+        analysisToggle.setOnAction(e -> {
+            boolean on = analysisToggle.isSelected();
+            evalBar.setVisible(on);
+            analysisText.setVisible(on);
+            rules.execute(() -> {
+                analysing = on;
+                if (on && analyzer == null) analyzer = new Analyzer(this::onAnalysis);
+                publish();
+            });
+        });
+        controlPanel.getChildren().addAll(analysisToggle, evalBar, analysisText);
 
         // Captured pieces display
         capturedWhiteBox = new VBox(5);
@@ -196,12 +253,19 @@ public class Main extends Application {
         root.heightProperty().addListener((obs, oldVal, newVal) -> resizeBoard(grid, root));
 
         // Initialize and start the timer
-        timer = new Timeline(new KeyFrame(Duration.seconds(1), e -> updateTimer()));
+        // The clock itself runs on System.nanoTime; the timeline only refreshes the display
+        timer = new Timeline(new KeyFrame(Duration.millis(100), e -> rules.execute(this::checkTime)));
         timer.setCycleCount(Timeline.INDEFINITE); // Loop the timer until stopped
         timer.playFromStart();
+        rules.execute(this::publish);
     }
 
     private void resizeBoard(GridPane grid, StackPane root) {
+        if (boardCanvas != null) {
+            // Repainted once on the next pulse however many size changes arrive before it
+            boardCanvas.resize(root.getWidth(), root.getHeight() - 100);
+            return;
+        }
         double size = Math.min(root.getWidth(), root.getHeight() - 100) / WIDTH;
         TILE_SIZE = (int) Math.max(size, 20); // Minimum size
         for (int row = 0; row < HEIGHT; row++) {
@@ -211,30 +275,116 @@ public class Main extends Application {
         }
     }
 
-    private void updateTimer() {
-        if (!gameOver) {  // Only update timer if game is not over
-            if (currentPlayer.equals("w")) {
-                whiteTotalTime--;
+    // Rules thread: a fresh snapshot for the clock display, and the flag-fall check
+    private void checkTime() {
+        if (!game.isOver()) {
+            game.checkTime();
+            publish();
+        }
+    }
+
+    /**
+     * Rules thread: hands a snapshot of the game to the FX thread. Snapshots
+     * published before the FX thread gets to the last one are replaced, so a
+     * burst of events is drawn once. A finished game is never replaced: a new
+     * game can follow the result at once, and the result must still be shown.
+     */
+    private void publish() {
+        GameView next = GameView.of(game);
+        while (true) {
+            GameView pending = pendingView.get();
+            if (pending != null && pending.isOver()) {
+                Platform.runLater(() -> show(next));
+                break;
+            }
+            if (pendingView.compareAndSet(pending, next)) {
+                if (pending == null) Platform.runLater(this::showView);
+                break;
+            }
+        }
+        if (engine != null) engine.consider(game, (move, key, moveCount) -> rules.execute(() -> playEngineMove(move, key, moveCount)));
+        if (analyzer != null) {
+            List<OpeningBook.Entry> bookMoves = analysing && !game.isOver() && game.sideToMove() != myColor
+                    ? book.entries(game.position()) : null;
+            if (bookMoves != null && bookMoves.isEmpty()) {
+                analyzer.analyse(game);
+            } else if (bookMoves != null) {
+                analyzer.stop();
+                postAnalysis(() -> showBook(bookMoves));
             } else {
-                blackTotalTime--;
+                analyzer.stop();
             }
+        }
+    }
 
-            // Update the timer display
-            timerText.setText((currentPlayer.equals("w") ? "White: " : "Black: ") +
-                    formatTime(currentPlayer.equals("w") ? whiteTotalTime : blackTotalTime));
+    // Analysis thread: only the newest line waiting for the FX thread is drawn
+    private void onAnalysis(Search.Result result, int whiteScore) {
+        postAnalysis(() -> showAnalysis(result, whiteScore));
+    }
 
-            // If time runs out, end the game
-            if (whiteTotalTime == 0 || blackTotalTime == 0) {
-                gameOver = true;
-                gameResult = (currentPlayer.equals("w") ? "Black" : "White") + " wins on time!";
-                if (currentPlayer.equals("w")) {
-                    blackScore += 1;
-                } else {
-                    whiteScore += 1;
-                }
-                timer.stop();
-                showWinPage();
-            }
+    private void postAnalysis(Runnable show) {
+        if (pendingAnalysis.getAndSet(show) == null) {
+            Platform.runLater(() -> pendingAnalysis.getAndSet(null).run());
+        }
+    }
+
+    private void showBook(List<OpeningBook.Entry> bookMoves) {
+        int total = 0;
+        for (OpeningBook.Entry entry : bookMoves) {
+            total += entry.weight;
+        }
+        StringBuilder text = new StringBuilder("Book");
+        for (OpeningBook.Entry entry : bookMoves) {
+            text.append('\n').append(Move.toUci(entry.move));
+            if (total > 0) text.append("  ").append(entry.weight * 100 / total).append('%');
+        }
+        evalBar.setProgress(0.5);
+        analysisText.setText(text.toString());
+    }
+
+    private void showAnalysis(Search.Result result, int whiteScore) {
+        String score = result.isMate() ? (whiteScore > 0 ? "#" : "#-") + Math.abs(result.mateIn())
+                : String.format("%+.2f", whiteScore / 100.0);
+        // The usual logistic fit of centipawns to expected score
+        evalBar.setProgress(result.isMate() ? (whiteScore > 0 ? 1 : 0) : 1 / (1 + Math.pow(10, -whiteScore / 400.0)));
+        analysisText.setText(score + "  depth " + result.depth + "\n" + result.pvString());
+    }
+
+    // Rules thread: the engine's reply, if the game is still where the engine left it
+    private void playEngineMove(int move, long positionKey, int moveCount) {
+        engine.moveHandled(positionKey, moveCount);
+        if (game.isOver() || game.moveCount() != moveCount || game.position().key() != positionKey) return;
+        game.applyMove(move);
+        publish();
+    }
+
+    // FX thread: the engine's latest completed iteration
+    private void showEngineInfo(Search.Result result) {
+        String score = result.isMate() ? "mate " + result.mateIn() : String.format("%+.2f", result.score / 100.0);
+        engineInfoText.setText("Engine: depth " + result.depth + ", " + score + ", " + result.nodesPerSecond() / 1000 + " kN/s\n" + result.pvString());
+    }
+
+    // FX thread: draws the newest snapshot
+    private void showView() {
+        show(pendingView.getAndSet(null));
+    }
+
+    private void show(GameView next) {
+        GameView previous = view;
+        view = next;
+        if (previous == null || !view.samePosition(previous)) {
+            selectedRow = selectedCol = -1;
+            updateBoard();
+            updatePointsDisplay();
+            updateCapturedDisplay();
+        }
+        updateTimerDisplay();
+        if (!view.isOver()) {
+            int side = view.sideToMove();
+            timerText.setText((side == Piece.WHITE ? "White: " : "Black: ") + formatTime(view.timeLeft(side)));
+            updateStatusText();
+        } else if (previous == null || !previous.isOver()) {
+            onGameOver();
         }
     }
 
@@ -244,136 +394,191 @@ public class Main extends Application {
         return String.format("%02d:%02d", minutes, seconds);
     }
 
-    private boolean askIfServer() {
+    private Role askRole() {
+        ButtonType server = new ButtonType("Server");
+        ButtonType client = new ButtonType("Client");
+        ButtonType computer = new ButtonType("Play Engine");
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
         alert.setTitle("Choose Role");
-        alert.setHeaderText("Start as Server or Client?");
-        alert.setContentText("Click OK for Server, Cancel for Client.");
+        alert.setHeaderText("Start as Server or Client, or play the computer?");
+        alert.setContentText("The server plays White and the client Black. Against the engine you play White.");
+        alert.getButtonTypes().setAll(server, client, computer);
         Optional<ButtonType> result = alert.showAndWait();
-        return result.isPresent() && result.get() == ButtonType.OK;
+        if (result.isPresent() && result.get() == server) return Role.SERVER;
+        if (result.isPresent() && result.get() == computer) return Role.ENGINE;
+        return Role.CLIENT;
     }
 
-    private void switchTurn() {
-        // Switch turn
-        currentPlayer = opponentColor();
-        gameStatusText.setText((currentPlayer.equals("w") ? myName : opponentName) + "'s turn");
+    private boolean isMyTurn() {
+        return view != null && !view.isOver() && view.sideToMove() == myColor;
+    }
 
-        // Restart the timer for the next player (continue the total time)
-        timer.stop();
-        timer.playFromStart();
+    private String nameOf(int color) {
+        return color == myColor ? myName : opponentName;
     }
 
-    private void receiveMove(String msg) {
-        Platform.runLater(() -> {
-            if (msg.startsWith("NAME ")) {
-                opponentName = msg.substring(5);
-                gameStatusText.setText(currentPlayer.equals("w") ? myName : opponentName + "'s turn");
-                return;
-            } else if (msg.equals("RESIGN")) {
-                gameOver = true;
-                gameResult = opponentName + " wins by resignation!";
-                if (currentPlayer.equals("w")) {
-                    blackScore += 1;
-                } else {
-                    whiteScore += 1;
-                }
-                timer.stop();
-                showWinPage();
-                return;
-            } else if (msg.startsWith("CHECKMATE:")) {
-                gameOver = true;
-                String winner = msg.substring(10);
-                if (winner.equals(myName)) {
-                    gameResult = myName + " wins!";
-                    whiteScore += currentPlayer.equals("w") ? 1 : 0;
-                    blackScore += currentPlayer.equals("b") ? 1 : 0;
-                } else {
-                    gameResult = opponentName + " wins!";
-                    whiteScore += currentPlayer.equals("b") ? 1 : 0;
-                    blackScore += currentPlayer.equals("w") ? 1 : 0;
+    // Runs on the connection thread: decode here, then hand plain values to the rules or FX thread
+    private void receiveFrame(ByteBuffer frame, int offset, int length) {
+        int type = Protocol.type(frame, offset);
+        if (Protocol.isGameEvent(type)) {
+            int sequence = Protocol.sequence(frame, offset);
+            int data = Protocol.eventData(frame, offset);
+            rules.execute(() -> receiveEvent(sequence, type, data));
+            return;
+        }
+        switch (type) {
+            case Protocol.NAME:
+                String name = Protocol.name(frame, offset, length);
+                Platform.runLater(() -> {
+                    opponentName = name;
+                    if (view != null && !view.isOver()) updateStatusText();
+                });
+                break;
+            case Protocol.COLOR:
+                // A GameServer assigns colours when it pairs us with an opponent
+                int color = Protocol.color(frame, offset);
+                rules.execute(() -> {
+                    myColor = color;
+                    resetGame();
+                });
+                break;
+            case Protocol.CLOCK:
+                long white = Protocol.clockMillis(frame, offset, Piece.WHITE);
+                long black = Protocol.clockMillis(frame, offset, Piece.BLACK);
+                rules.execute(() -> {
+                    game.syncClock(white, black);
+                    publish();
+                });
+                break;
+        }
+    }
+
+    // Rules thread. Events are applied once each and in order, however often they are resent
+    private void receiveEvent(int sequence, int type, int data) {
+        if (!GameLog.follows(sequence, type, lastReceived)) return;
+        lastReceived = sequence;
+        switch (type) {
+            case Protocol.MOVE:
+                receiveMove(data);
+                break;
+            case Protocol.RESIGN:
+                game.resign(data);
+                publish();
+                break;
+            case Protocol.RESULT:
+                // Both sides detect mates and draws locally; only a server's flag-fall is news
+                if (GameLog.status(data) == Game.Status.TIMEOUT && !game.isOver()) {
+                    game.declareResult(Game.Status.TIMEOUT, GameLog.winner(data));
+                    publish();
                 }
-                timer.stop();
-                showWinPage();
-                return;
-            }
+                break;
+            case Protocol.NEW_GAME:
+                if (game.isOver()) resetGame();
+                break;
+        }
+    }
 
-            String[] parts = msg.split(" ");
-            int fromRow = Integer.parseInt(parts[0]);
-            int fromCol = Integer.parseInt(parts[1]);
-            int toRow = Integer.parseInt(parts[2]);
-            int toCol = Integer.parseInt(parts[3]);
+    private void sendEvent(int type, int data) {
+        if (connection == null) return;
+        int sequence = sentEvents.append(type, data);
+        connection.sendEvent(sequence, type, data).whenComplete(Main::logSendFailure);
+    }
 
-            movePiece(fromRow, fromCol, toRow, toCol);
-            updateBoard();
+    // Rules thread, after every handshake: resend what the peer missed, or start over if the session is new
+    private void onSession(boolean resumed, int peerSequence) {
+        if (resumed) {
+            sentEvents.replay(peerSequence, connection::sendEvent);
+            // The hosting peer's clock is the reference for both
+            if (isServer) connection.sendClock(game.timeLeftMillis(Piece.WHITE), game.timeLeftMillis(Piece.BLACK));
+        } else {
+            sentEvents = new GameLog();
+            lastReceived = 0;
+            if (game.isOver() || game.moveCount() > 0) resetGame();
+        }
+        connection.sendName(myName).whenComplete(Main::logSendFailure);
+    }
+
+    // Rules thread: validation and mate detection happen here; the FX thread only draws the result
+    private void receiveMove(int wireMove) {
+        // Only raises the analysis thread's stop flag; its result for this position stays in its table
+        if (analyzer != null) analyzer.stop();
+        int move = Protocol.resolve(game, wireMove);
+        // Our copy of the opponent's clock kept running while the move crossed the network
+        if (move != Move.NONE) game.creditLag(game.sideToMove(), connection.oneWayLatencyMillis());
+        if (move == Move.NONE || !game.applyMove(move)) {
+            if (!game.isOver()) {
+                System.err.println("Ignoring invalid move from opponent: "
+                        + Bitboards.squareName(Protocol.wireFrom(wireMove)) + Bitboards.squareName(Protocol.wireTo(wireMove)));
+            }
+        }
+        publish();
+    }
 
-            if (isCheckmate(currentPlayer)) {
-                gameOver = true;
-                String winner = opponentColor().equals("w") ? myName : opponentName;
-                gameResult = winner + " wins!";
-                if (currentPlayer.equals("w")) {
-                    blackScore += 1;
-                } else {
-                    whiteScore += 1;
-                }
-                timer.stop();
-                showWinPage();
+    // Rules thread: a move clicked on the board, checked against the game as it is now
+    private void playMove(int from, int to) {
+        if (game.isOver() || game.sideToMove() != myColor) return;
+        int move = game.findMove(from, to);
+        if (move != Move.NONE && game.applyMove(move)) {
+            sendEvent(Protocol.MOVE, Protocol.wireMove(move));
+            if (game.status() == Game.Status.CHECKMATE) {
                 // Notify opponent
-                try {
-                    connection.send("CHECKMATE:" + winner);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            } else if (isInCheck(currentPlayer)) {
-                gameStatusText.setText((currentPlayer.equals("w") ? myName : opponentName) + " is in check!");
-            } else {
-                gameStatusText.setText((currentPlayer.equals("w") ? myName : opponentName) + "'s turn");
+                sendEvent(Protocol.RESULT, GameLog.result(game.status(), game.winner()));
             }
+        }
+        // Also shows a loss on time if our flag fell before the move was made
+        publish();
+    }
 
-            currentPlayer = opponentColor();
-            isMyTurn = true;
-        });
+    // Sends complete on the connection's writer thread
+    private static void logSendFailure(Void ignored, Throwable error) {
+        if (error != null) System.err.println("Send failed: " + error.getMessage());
     }
 
-    private void initializePieces() {
-        String[] backRow = {"R", "N", "B", "Q", "K", "B", "N", "R"};
-        for (int i = 0; i < 8; i++) {
-            piecePositions[0][i] = "b" + backRow[i];
-            piecePositions[1][i] = "bP";
-            piecePositions[6][i] = "wP";
-            piecePositions[7][i] = "w" + backRow[i];
+    private void updateStatusText() {
+        String name = nameOf(view.sideToMove());
+        gameStatusText.setText(view.isInCheck() ? name + " is in check!" : name + "'s turn");
+    }
+
+    private void onGameOver() {
+        gameStatusText.setText(resultText());
+        showWinPage();
+    }
+
+    // The clocks keep running while the connection tries to resume the session
+    private void onDisconnected(java.io.IOException reason) {
+        gameStatusText.setText("Connection lost: " + reason.getMessage());
+    }
+
+    private String resultText() {
+        switch (view.status()) {
+            case CHECKMATE: return nameOf(view.winner()) + " wins!";
+            case RESIGNATION: return nameOf(view.winner()) + " wins by resignation!";
+            case TIMEOUT: return (view.winner() == Piece.WHITE ? "White" : "Black") + " wins on time!";
+            case STALEMATE: return "Draw by stalemate!";
+            case THREEFOLD_REPETITION: return "Draw by threefold repetition!";
+            case FIFTY_MOVE_RULE: return "Draw by the fifty-move rule!";
+            default: return "";
         }
     }
 
     private void updateBoard() {
+        if (boardCanvas != null) {
+            boardCanvas.update(view);
+            return;
+        }
         for (int row = 0; row < HEIGHT; row++) {
             for (int col = 0; col < WIDTH; col++) {
-                board[row][col].updatePiece(piecePositions[row][col]);
+                board[row][col].updatePiece(view.pieceAt(row, col));
                 board[row][col].rect.setStrokeWidth(0);
             }
         }
     }
 
-    private void movePiece(int fromRow, int fromCol, int toRow, int toCol) {
-        String captured = piecePositions[toRow][toCol];
-        piecePositions[toRow][toCol] = piecePositions[fromRow][fromCol];
-        piecePositions[fromRow][fromCol] = null;
-        // Update points and captured pieces if a piece is captured
-        if (captured != null) {
-            if (captured.charAt(0) == 'w') {
-                blackPoints += getPieceValue(captured);
-                capturedByBlack.add(captured);
-            } else {
-                whitePoints += getPieceValue(captured);
-                capturedByWhite.add(captured);
-            }
-            updatePointsDisplay();
-            updateCapturedDisplay();
-        }
-    }
-
     private void updateCapturedDisplay() {
         capturedWhiteBox.getChildren().removeIf(node -> node instanceof Text);
         capturedBlackBox.getChildren().removeIf(node -> node instanceof Text);
+        List<Integer> capturedByWhite = view.captured(Piece.WHITE);
+        List<Integer> capturedByBlack = view.captured(Piece.BLACK);
         if (!capturedByWhite.isEmpty()) {
             Text t = new Text(capturedListToSymbols(capturedByWhite));
             t.setFont(Font.font("Arial", 22));
@@ -388,16 +593,16 @@ public class Main extends Application {
         }
     }
 
-    private String capturedListToSymbols(List<String> captured) {
+    private String capturedListToSymbols(List<Integer> captured) {
         StringBuilder sb = new StringBuilder();
-        for (String piece : captured) {
-            switch (piece.charAt(1)) {
-                case 'K': sb.append("♔"); break;
-                case 'Q': sb.append("♕"); break;
-                case 'R': sb.append("♖"); break;
-                case 'B': sb.append("♗"); break;
-                case 'N': sb.append("♘"); break;
-                case 'P': sb.append("♙"); break;
+        for (int piece : captured) {
+            switch (Piece.type(piece)) {
+                case Piece.KING: sb.append("♔"); break;
+                case Piece.QUEEN: sb.append("♕"); break;
+                case Piece.ROOK: sb.append("♖"); break;
+                case Piece.BISHOP: sb.append("♗"); break;
+                case Piece.KNIGHT: sb.append("♘"); break;
+                case Piece.PAWN: sb.append("♙"); break;
             }
         }
         return sb.toString();
@@ -425,7 +630,7 @@ public class Main extends Application {
 
             stack.setOnMouseClicked(this::handleClick);
             stack.setOnMouseEntered(e -> {
-                if (!gameOver && piecePositions[row][col] != null) {
+                if (view != null && !view.isOver() && view.pieceAt(row, col) != Piece.NONE) {
                     rect.setStroke(Color.YELLOW);
                     rect.setStrokeWidth(2);
                 }
@@ -444,77 +649,24 @@ public class Main extends Application {
             text.setFont(Font.font("Arial", FontWeight.BOLD, TILE_SIZE * 0.4));
         }
 
-        void updatePiece(String piece) {
-            if (piece == null) {
+        void updatePiece(int piece) {
+            if (piece == Piece.NONE) {
                 text.setText("");
             } else {
-                switch (piece.charAt(1)) {
-                    case 'K': text.setText("♔"); break;
-                    case 'Q': text.setText("♕"); break;
-                    case 'R': text.setText("♖"); break;
-                    case 'B': text.setText("♗"); break;
-                    case 'N': text.setText("♘"); break;
-                    case 'P': text.setText("♙"); break;
+                switch (Piece.type(piece)) {
+                    case Piece.KING: text.setText("♔"); break;
+                    case Piece.QUEEN: text.setText("♕"); break;
+                    case Piece.ROOK: text.setText("♖"); break;
+                    case Piece.BISHOP: text.setText("♗"); break;
+                    case Piece.KNIGHT: text.setText("♘"); break;
+                    case Piece.PAWN: text.setText("♙"); break;
                 }
-                text.setFill(piece.charAt(0) == 'w' ? Color.WHITE : Color.BLACK);
+                text.setFill(Piece.color(piece) == Piece.WHITE ? Color.WHITE : Color.BLACK);
             }
         }
 
         void handleClick(MouseEvent event) {
-            if (!isMyTurn || gameOver) return;
-
-            if (selectedRow == -1 && selectedCol == -1) {
-                if (piecePositions[row][col] != null && piecePositions[row][col].charAt(0) == currentPlayer.charAt(0)) {
-                    selectedRow = row;
-                    selectedCol = col;
-                    rect.setStroke(Color.YELLOW);
-                    rect.setStrokeWidth(4);
-                    highlightValidMoves(row, col);
-                }
-            } else {
-                if (isValidMove(selectedRow, selectedCol, row, col, currentPlayer.charAt(0))) {
-                    boolean legal = !isInCheck(currentPlayer) || canEscapeCheck(selectedRow, selectedCol, row, col);
-                    if (legal) {
-                        movePiece(selectedRow, selectedCol, row, col);
-                        updateBoard();
-                        try {
-                            connection.send(selectedRow + " " + selectedCol + " " + row + " " + col);
-                            isMyTurn = false;
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-
-                        if (isCheckmate(opponentColor())) {
-                            gameOver = true;
-                            String winner = currentPlayer.equals("w") ? myName : opponentName;
-                            gameResult = winner + " wins!";
-                            if (currentPlayer.equals("w")) {
-                                blackScore += 1;
-                            } else {
-                                whiteScore += 1;
-                            }
-                            timer.stop();
-                            showWinPage();
-                            // Notify opponent
-                            try {
-                                connection.send("CHECKMATE:" + winner);
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        } else if (isInCheck(opponentColor())) {
-                            gameStatusText.setText(opponentName + " is in check!");
-                        } else {
-                            gameStatusText.setText(opponentName + "'s turn");
-                        }
-
-                        currentPlayer = opponentColor();
-                    } else {
-                        gameStatusText.setText(myName + " is in check!");
-                    }
-                }
-                board[selectedRow][selectedCol].rect.setStrokeWidth(0);
-                selectedRow = selectedCol = -1;
-            }
+            onSquareClicked(row, col);
         }
 
         StackPane getStack() {
@@ -522,139 +674,44 @@ public class Main extends Application {
         }
     }
 
-    private boolean isValidMove(int fromRow, int fromCol, int toRow, int toCol, char color) {
-        String piece = piecePositions[fromRow][fromCol];
-        if (piece == null) return false;
-        char type = piece.charAt(1);
-        if (piecePositions[toRow][toCol] != null && piecePositions[toRow][toCol].charAt(0) == color) return false;
-
-        boolean result = false;
-        switch (type) {
-            case 'K': result = isValidKingMove(fromRow, fromCol, toRow, toCol); break;
-            case 'Q': result = isValidQueenMove(fromRow, fromCol, toRow, toCol); break;
-            case 'R': result = isValidRookMove(fromRow, fromCol, toRow, toCol); break;
-            case 'B': result = isValidBishopMove(fromRow, fromCol, toRow, toCol); break;
-            case 'N': result = isValidKnightMove(fromRow, fromCol, toRow, toCol); break;
-            case 'P': result = isValidPawnMove(fromRow, fromCol, toRow, toCol, color); break;
-            default: result = false;
-        }
-        return result;
-    }
-
-    private boolean isValidKingMove(int r1, int c1, int r2, int c2) {
-        return Math.abs(r1 - r2) <= 1 && Math.abs(c1 - c2) <= 1;
-    }
-
-    private boolean isValidQueenMove(int r1, int c1, int r2, int c2) {
-        return isValidRookMove(r1, c1, r2, c2) || isValidBishopMove(r1, c1, r2, c2);
-    }
-
-    private boolean isValidRookMove(int r1, int c1, int r2, int c2) {
-        if (r1 != r2 && c1 != c2) return false;
-        return !isPathBlocked(r1, c1, r2, c2);
-    }
-
-    private boolean isValidBishopMove(int r1, int c1, int r2, int c2) {
-        if (Math.abs(r1 - r2) != Math.abs(c1 - c2)) return false;
-        return !isPathBlocked(r1, c1, r2, c2);
-    }
-
-    private boolean isValidKnightMove(int r1, int c1, int r2, int c2) {
-        return (Math.abs(r1 - r2) == 2 && Math.abs(c1 - c2) == 1) ||
-                (Math.abs(r1 - r2) == 1 && Math.abs(c1 - c2) == 2);
-    }
-
-    private boolean isValidPawnMove(int r1, int c1, int r2, int c2, char color) {
-        int dir = color == 'w' ? -1 : 1;
-        if (c1 == c2 && piecePositions[r2][c2] == null) {
-            if ((color == 'w' && r1 == 6 && r2 == 4) || (color == 'b' && r1 == 1 && r2 == 3)) return true;
-            return r2 == r1 + dir;
-        } else if (Math.abs(c1 - c2) == 1 && r2 == r1 + dir) {
-            return piecePositions[r2][c2] != null && piecePositions[r2][c2].charAt(0) != color;
-        }
-        return false;
-    }
-
-    private boolean isPathBlocked(int r1, int c1, int r2, int c2) {
-        int rowStep = Integer.signum(r2 - r1);
-        int colStep = Integer.signum(c2 - c1);
-        int row = r1 + rowStep;
-        int col = c1 + colStep;
-        while (row != r2 || col != c2) {
-            if (piecePositions[row][col] != null) return true;
-            row += rowStep;
-            col += colStep;
-        }
-        return false;
-    }
-
-    private boolean isInCheck(String color) {
-        int kingRow = -1, kingCol = -1;
-        for (int r = 0; r < HEIGHT; r++) {
-            for (int c = 0; c < WIDTH; c++) {
-                if (piecePositions[r][c] != null && piecePositions[r][c].equals(color + "K")) {
-                    kingRow = r;
-                    kingCol = c;
-                    break;
-                }
-            }
-        }
+    private void onSquareClicked(int row, int col) {
+        if (!isMyTurn()) return;
 
-        for (int r = 0; r < HEIGHT; r++) {
-            for (int c = 0; c < WIDTH; c++) {
-                if (piecePositions[r][c] != null && piecePositions[r][c].charAt(0) != color.charAt(0)) {
-                    if (isValidMove(r, c, kingRow, kingCol, piecePositions[r][c].charAt(0))) return true;
+        if (selectedRow == -1 && selectedCol == -1) {
+            int piece = view.pieceAt(row, col);
+            if (piece != Piece.NONE && Piece.color(piece) == myColor) {
+                selectedRow = row;
+                selectedCol = col;
+                if (boardCanvas == null) {
+                    board[row][col].rect.setStroke(Color.YELLOW);
+                    board[row][col].rect.setStrokeWidth(4);
                 }
+                highlightValidMoves(row, col);
             }
-        }
-        return false;
-    }
-
-    private boolean canEscapeCheck(int r1, int c1, int r2, int c2) {
-        char color = piecePositions[r1][c1].charAt(0);
-        String[][] backup = copyBoard();
-        movePiece(r1, c1, r2, c2);
-        boolean safe = !isInCheck(String.valueOf(color));
-        piecePositions = backup;
-        return safe;
-    }
-
-    private boolean isCheckmate(String color) {
-        if (!isInCheck(color)) return false;
-        for (int r1 = 0; r1 < HEIGHT; r1++) {
-            for (int c1 = 0; c1 < WIDTH; c1++) {
-                if (piecePositions[r1][c1] != null && piecePositions[r1][c1].charAt(0) == color.charAt(0)) {
-                    for (int r2 = 0; r2 < HEIGHT; r2++) {
-                        for (int c2 = 0; c2 < WIDTH; c2++) {
-                            if (isValidMove(r1, c1, r2, c2, color.charAt(0)) &&
-                                    canEscapeCheck(r1, c1, r2, c2)) return false;
-                        }
-                    }
-                }
+        } else {
+            int from = Bitboards.square(selectedRow, selectedCol);
+            int to = Bitboards.square(row, col);
+            rules.execute(() -> playMove(from, to));
+            if (boardCanvas != null) {
+                boardCanvas.clearSelection();
+            } else {
+                board[selectedRow][selectedCol].rect.setStrokeWidth(0);
             }
+            selectedRow = selectedCol = -1;
         }
-        return true;
-    }
-
-    private String[][] copyBoard() {
-        String[][] copy = new String[HEIGHT][WIDTH];
-        for (int i = 0; i < HEIGHT; i++) {
-            System.arraycopy(piecePositions[i], 0, copy[i], 0, WIDTH);
-        }
-        return copy;
-    }
-
-    private String opponentColor() {
-        return currentPlayer.equals("w") ? "b" : "w";
     }
 
     private void highlightValidMoves(int row, int col) {
-        String piece = piecePositions[row][col];
-        if (piece == null) return;
-        char color = piece.charAt(0);
+        if (view.pieceAt(row, col) == Piece.NONE) return;
+        int from = Bitboards.square(row, col);
+        long targets = view.legalMoves().targets(from);
+        if (boardCanvas != null) {
+            boardCanvas.select(row, col, targets);
+            return;
+        }
         for (int r = 0; r < HEIGHT; r++) {
             for (int c = 0; c < WIDTH; c++) {
-                if (isValidMove(row, col, r, c, color)) {
+                if ((targets & Bitboards.bit(Bitboards.square(r, c))) != 0) {
                     board[r][c].rect.setStroke(Color.GREEN);
                     board[r][c].rect.setStrokeWidth(3);
                 } else {
@@ -665,10 +722,10 @@ public class Main extends Application {
     }
 
     private void updateTimerDisplay() {
-        whiteTimerText.setText("White: " + formatTime(whiteTotalTime));
-        blackTimerText.setText("Black: " + formatTime(blackTotalTime));
+        whiteTimerText.setText("White: " + formatTime(view.timeLeft(Piece.WHITE)));
+        blackTimerText.setText("Black: " + formatTime(view.timeLeft(Piece.BLACK)));
         // Highlight active player's timer and points
-        if (currentPlayer.equals("w")) {
+        if (view.sideToMove() == Piece.WHITE) {
             whiteTimerText.setFill(Color.RED);
             blackTimerText.setFill(Color.BLACK);
             whitePointsText.setFill(Color.RED);
@@ -682,7 +739,7 @@ public class Main extends Application {
     }
 
     private void handleResign() {
-        if (!gameOver) {
+        if (!view.isOver()) {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
             alert.setTitle("Resign Game");
             alert.setHeaderText("Confirm Resignation");
@@ -690,20 +747,12 @@ public class Main extends Application {
 
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
-                try {
-                    connection.send("RESIGN");
-                    gameOver = true;
-                    gameResult = opponentName + " wins by resignation!";
-                    if (currentPlayer.equals("w")) {
-                        blackScore += 1;
-                    } else {
-                        whiteScore += 1;
-                    }
-                    timer.stop();
-                    showWinPage();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                rules.execute(() -> {
+                    if (game.isOver()) return;
+                    sendEvent(Protocol.RESIGN, myColor);
+                    game.resign(myColor);
+                    publish();
+                });
             }
         }
     }
@@ -719,7 +768,7 @@ public class Main extends Application {
         mainLayout.setStyle("-fx-padding: 20; -fx-background-color: #f0f0f0;");
 
         // Game result text
-        Text resultText = new Text(gameResult);
+        Text resultText = new Text(resultText());
         resultText.setFont(Font.font("Arial", FontWeight.BOLD, 24));
         resultText.setFill(Color.DARKRED);
 
@@ -728,8 +777,8 @@ public class Main extends Application {
         scorecard.setAlignment(Pos.CENTER);
         scorecard.setStyle("-fx-background-color: white; -fx-padding: 20; -fx-border-radius: 10;");
 
-        Text whiteScoreText = new Text("White (" + myName + "): " + whiteScore);
-        Text blackScoreText = new Text("Black (" + opponentName + "): " + blackScore);
+        Text whiteScoreText = new Text("White (" + nameOf(Piece.WHITE) + "): " + view.wins(Piece.WHITE));
+        Text blackScoreText = new Text("Black (" + nameOf(Piece.BLACK) + "): " + view.wins(Piece.BLACK));
         whiteScoreText.setFont(Font.font("Arial", 16));
         blackScoreText.setFont(Font.font("Arial", 16));
 
@@ -741,7 +790,12 @@ public class Main extends Application {
         restartButton.setPrefWidth(200);
         restartButton.setOnAction(e -> {
             winStage.close();
-            resetGame();
+            rules.execute(() -> {
+                if (game.isOver()) {
+                    resetGame();
+                    sendEvent(Protocol.NEW_GAME, 0);
+                }
+            });
         });
 
         mainLayout.getChildren().addAll(resultText, scorecard, restartButton);
@@ -751,55 +805,15 @@ public class Main extends Application {
         winStage.show();
     }
 
+    // Rules thread
     private void resetGame() {
-        // Reset game state
-        gameOver = false;
-        gameResult = "";
-        whiteTotalTime = 600;
-        blackTotalTime = 600;
-        currentPlayer = "w";
-        isMyTurn = isServer;
-        whitePoints = 0;
-        blackPoints = 0;
-        capturedByWhite.clear();
-        capturedByBlack.clear();
-        updatePointsDisplay();
-        updateCapturedDisplay();
-        
-        // Reset board
-        for (int i = 0; i < HEIGHT; i++) {
-            Arrays.fill(piecePositions[i], null);
-        }
-        initializePieces();
-        updateBoard();
-        
-        // Reset UI
-        gameStatusText.setText(isMyTurn ? myName + "'s turn" : opponentName + "'s turn");
-        updateTimerDisplay();
-        
-        // Enable buttons
-        resignButton.setDisable(false);
-        
-        // Restart timer
-        timer.stop();
-        timer.playFromStart();
+        game.reset();
+        publish();
     }
 
     private void updatePointsDisplay() {
-        whitePointsText.setText("White Points: " + whitePoints);
-        blackPointsText.setText("Black Points: " + blackPoints);
-    }
-
-    private int getPieceValue(String piece) {
-        if (piece == null) return 0;
-        switch (piece.charAt(1)) {
-            case 'P': return 1;
-            case 'N':
-            case 'B': return 3;
-            case 'R': return 5;
-            case 'Q': return 9;
-            default: return 0;
-        }
+        whitePointsText.setText("White Points: " + view.points(Piece.WHITE));
+        blackPointsText.setText("Black Points: " + view.points(Piece.BLACK));
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,68 @@
+/**
+ * Moves are packed into the low 16 bits of an int:
+ * bits 0-5 from square, 6-11 to square, 12-15 flags.
+ */
+public final class Move {
+    public static final int NONE = 0;
+
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    // 8-11: promotion to N, B, R, Q; 12-15: the same with a capture
+    public static final int PROMOTION = 8;
+
+    private Move() {
+    }
+
+    public static int make(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    public static int promotion(int from, int to, int promotionType, boolean capture) {
+        return make(from, to, PROMOTION | (capture ? CAPTURE : 0) | (promotionType - Piece.KNIGHT));
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    public static boolean isCapture(int move) {
+        return (flags(move) & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (flags(move) & PROMOTION) != 0;
+    }
+
+    public static int promotionType(int move) {
+        return (flags(move) & 3) + Piece.KNIGHT;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return flags(move) == EN_PASSANT;
+    }
+
+    public static boolean isCastle(int move) {
+        int flags = flags(move);
+        return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+    }
+
+    // Long algebraic notation, e.g. "e2e4" or "e7e8q"
+    public static String toUci(int move) {
+        if (move == NONE) return "0000";
+        String s = Bitboards.squareName(from(move)) + Bitboards.squareName(to(move));
+        if (isPromotion(move)) s += Character.toLowerCase("PNBRQK".charAt(promotionType(move)));
+        return s;
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Bulk move generation into caller-owned int buffers. Nothing here allocates;
+ * the caller keeps one buffer (or one slice of a buffer per search ply) and
+ * receives the index one past the last move written.
+ */
+public final class MoveGenerator {
+    // No legal chess position has more than 218 moves
+    public static final int MAX_MOVES = 256;
+
+    private MoveGenerator() {
+    }
+
+    public static int generatePseudoLegal(Position pos, int[] moves) {
+        return generatePseudoLegal(pos, moves, 0);
+    }
+
+    // Every move that obeys piece movement rules, ignoring whether it leaves the own king attacked
+    public static int generatePseudoLegal(Position pos, int[] moves, int n) {
+        int us = pos.sideToMove;
+        long targets = ~pos.occupancy[us];
+        n = generatePawnMoves(pos, moves, n, targets);
+        n = generatePieceMoves(pos, moves, n, targets);
+        n = generateKingMoves(pos, moves, n, targets);
+        return generateCastling(pos, moves, n);
+    }
+
+    public static int generateLegal(Position pos, int[] moves) {
+        return generateLegal(pos, moves, 0);
+    }
+
+    // Only legal moves. Checkers and pinned pieces are computed once; in check only
+    // king moves, captures of the checker and interpositions are generated.
+    public static int generateLegal(Position pos, int[] moves, int n) {
+        int us = pos.sideToMove;
+        int king = pos.kingSquare(us);
+        if (king == Position.NO_SQUARE) return generatePseudoLegal(pos, moves, n);
+        long checkers = pos.checkers();
+
+        n = generateLegalKingMoves(pos, moves, n, king);
+        if (Long.bitCount(checkers) > 1) return n;
+
+        long targets = ~pos.occupancy[us];
+        if (checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            targets &= checkers | Bitboards.between(king, checker);
+        }
+        int start = n;
+        n = generatePawnMoves(pos, moves, n, targets);
+        n = generatePieceMoves(pos, moves, n, targets);
+        n = filterPinned(pos, moves, start, n, king, pos.pinned(us));
+        if (checkers == 0) n = generateCastling(pos, moves, n);
+        return n;
+    }
+
+    // Stops at the first legal move instead of listing them all
+    public static boolean hasLegalMove(Position pos, int[] scratch) {
+        int us = pos.sideToMove;
+        int king = pos.kingSquare(us);
+        if (king == Position.NO_SQUARE) return generatePseudoLegal(pos, scratch, 0) > 0;
+        if (generateLegalKingMoves(pos, scratch, 0, king) > 0) return true;
+        long checkers = pos.checkers();
+        if (Long.bitCount(checkers) > 1) return false;
+
+        long targets = ~pos.occupancy[us];
+        if (checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            targets &= checkers | Bitboards.between(king, checker);
+        }
+        long pinned = pos.pinned(us);
+        int n = generatePieceMoves(pos, scratch, 0, targets);
+        if (filterPinned(pos, scratch, 0, n, king, pinned) > 0) return true;
+        n = generatePawnMoves(pos, scratch, 0, targets);
+        return filterPinned(pos, scratch, 0, n, king, pinned) > 0;
+    }
+
+    private static int generateLegalKingMoves(Position pos, int[] moves, int n, int king) {
+        int us = pos.sideToMove;
+        long enemy = pos.occupancy[us ^ 1];
+        // Take the king off the board so sliders see through the square it leaves
+        long occupied = pos.occupied ^ (1L << king);
+        long to = Bitboards.kingAttacks(king) & ~pos.occupancy[us];
+        while (to != 0) {
+            int sq = Long.numberOfTrailingZeros(to);
+            to &= to - 1;
+            if ((pos.attackersTo(sq, occupied) & enemy) == 0) {
+                moves[n++] = Move.make(king, sq, (enemy & (1L << sq)) != 0 ? Move.CAPTURE : Move.QUIET);
+            }
+        }
+        return n;
+    }
+
+    // Drops moves of pinned pieces that leave the pin line, compacting the buffer in place.
+    // En passant can expose the king along the rank, so it is verified by playing it.
+    private static int filterPinned(Position pos, int[] moves, int start, int end, int king, long pinned) {
+        int n = start;
+        for (int i = start; i < end; i++) {
+            int move = moves[i];
+            int from = Move.from(move);
+            if (Move.isEnPassant(move)) {
+                if (!pos.isLegal(move)) continue;
+            } else if ((pinned & (1L << from)) != 0
+                    && (Bitboards.line(king, from) & (1L << Move.to(move))) == 0) {
+                continue;
+            }
+            moves[n++] = move;
+        }
+        return n;
+    }
+
+    static int generatePawnMoves(Position pos, int[] moves, int n, long targets) {
+        int us = pos.sideToMove;
+        long pawns = pos.pieces[Piece.make(us, Piece.PAWN)];
+        long enemy = pos.occupancy[us ^ 1] & targets;
+        long empty = ~pos.occupied;
+        long promotionRank = us == Piece.WHITE ? Bitboards.RANK_8 : Bitboards.RANK_1;
+        int up = us == Piece.WHITE ? 8 : -8;
+
+        long single = shift(pawns, up) & empty;
+        long doubles = shift(single & (us == Piece.WHITE ? Bitboards.RANK_3 : Bitboards.RANK_6), up) & empty & targets;
+        single &= targets;
+
+        n = addPawnMoves(moves, n, single & ~promotionRank, up, Move.QUIET);
+        n = addPromotions(moves, n, single & promotionRank, up, false);
+        n = addPawnMoves(moves, n, doubles, 2 * up, Move.DOUBLE_PUSH);
+
+        // Captures towards the h-file, then towards the a-file
+        int east = up + 1, west = up - 1;
+        long eastCaptures = shift(pawns & ~Bitboards.FILE_H, east) & enemy;
+        long westCaptures = shift(pawns & ~Bitboards.FILE_A, west) & enemy;
+        n = addPawnMoves(moves, n, eastCaptures & ~promotionRank, east, Move.CAPTURE);
+        n = addPromotions(moves, n, eastCaptures & promotionRank, east, true);
+        n = addPawnMoves(moves, n, westCaptures & ~promotionRank, west, Move.CAPTURE);
+        n = addPromotions(moves, n, westCaptures & promotionRank, west, true);
+
+        if (pos.epSquare != Position.NO_SQUARE) {
+            long capturers = Bitboards.pawnAttacks(us ^ 1, pos.epSquare) & pawns;
+            while (capturers != 0) {
+                int from = Long.numberOfTrailingZeros(capturers);
+                capturers &= capturers - 1;
+                moves[n++] = Move.make(from, pos.epSquare, Move.EN_PASSANT);
+            }
+        }
+        return n;
+    }
+
+    static int generatePieceMoves(Position pos, int[] moves, int n, long targets) {
+        int us = pos.sideToMove;
+        long enemy = pos.occupancy[us ^ 1];
+        for (int type = Piece.KNIGHT; type <= Piece.QUEEN; type++) {
+            int piece = Piece.make(us, type);
+            long bb = pos.pieces[piece];
+            while (bb != 0) {
+                int from = Long.numberOfTrailingZeros(bb);
+                bb &= bb - 1;
+                n = addMoves(moves, n, from, Position.attacksFrom(piece, from, pos.occupied) & targets, enemy);
+            }
+        }
+        return n;
+    }
+
+    static int generateKingMoves(Position pos, int[] moves, int n, long targets) {
+        int us = pos.sideToMove;
+        int from = pos.kingSquare(us);
+        if (from == Position.NO_SQUARE) return n;
+        return addMoves(moves, n, from, Bitboards.kingAttacks(from) & targets, pos.occupancy[us ^ 1]);
+    }
+
+    // Castling is only emitted when the king does not start on, pass or land on an attacked square
+    static int generateCastling(Position pos, int[] moves, int n) {
+        int us = pos.sideToMove, them = us ^ 1;
+        int rights = pos.castlingRights & (us == Piece.WHITE
+                ? Position.WHITE_OO | Position.WHITE_OOO : Position.BLACK_OO | Position.BLACK_OOO);
+        if (rights == 0) return n;
+        int king = us == Piece.WHITE ? 4 : 60;
+        if (pos.board[king] != Piece.make(us, Piece.KING) || pos.isSquareAttacked(king, them)) return n;
+        int rook = Piece.make(us, Piece.ROOK);
+        if ((rights & (Position.WHITE_OO | Position.BLACK_OO)) != 0
+                && pos.board[king + 3] == rook
+                && (pos.occupied & Bitboards.between(king, king + 3)) == 0
+                && !pos.isSquareAttacked(king + 1, them) && !pos.isSquareAttacked(king + 2, them)) {
+            moves[n++] = Move.make(king, king + 2, Move.KING_CASTLE);
+        }
+        if ((rights & (Position.WHITE_OOO | Position.BLACK_OOO)) != 0
+                && pos.board[king - 4] == rook
+                && (pos.occupied & Bitboards.between(king, king - 4)) == 0
+                && !pos.isSquareAttacked(king - 1, them) && !pos.isSquareAttacked(king - 2, them)) {
+            moves[n++] = Move.make(king, king - 2, Move.QUEEN_CASTLE);
+        }
+        return n;
+    }
+
+    private static long shift(long bb, int by) {
+        return by > 0 ? bb << by : bb >>> -by;
+    }
+
+    private static int addPawnMoves(int[] moves, int n, long to, int offset, int flags) {
+        while (to != 0) {
+            int sq = Long.numberOfTrailingZeros(to);
+            to &= to - 1;
+            moves[n++] = Move.make(sq - offset, sq, flags);
+        }
+        return n;
+    }
+
+    private static int addPromotions(int[] moves, int n, long to, int offset, boolean capture) {
+        while (to != 0) {
+            int sq = Long.numberOfTrailingZeros(to);
+            to &= to - 1;
+            for (int type = Piece.QUEEN; type >= Piece.KNIGHT; type--) {
+                moves[n++] = Move.promotion(sq - offset, sq, type, capture);
+            }
+        }
+        return n;
+    }
+
+    private static int addMoves(int[] moves, int n, int from, long to, long enemy) {
+        while (to != 0) {
+            int sq = Long.numberOfTrailingZeros(to);
+            to &= to - 1;
+            moves[n++] = Move.make(from, sq, (enemy & (1L << sq)) != 0 ? Move.CAPTURE : Move.QUIET);
+        }
+        return n;
+    }
+}
@@ -1,25 +1,192 @@
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
+/**
+ * A blocking connection to one peer speaking the binary {@link Protocol}.
+ * Received frames are handed to the handler on the connection thread.
+ * Sends never block the caller on the socket: frames go through a bounded
+ * {@link SendQueue} drained by a writer thread, and each send returns a
+ * future that completes once the frame has been written.
+ *
+ * While connected, both sides ping every heartbeat interval. The echoes give
+ * a smoothed round-trip time, and a peer that sends nothing at all for the
+ * timeout is treated as dead and disconnected. The same timeout bounds the
+ * wait for the peer's HELLO.
+ *
+ * The handshake also carries a session token (see {@link Protocol}). The
+ * connecting side keeps the token it was given and, when a connection drops,
+ * dials again with growing pauses for up to the reconnect window, offering
+ * the token and the last event it saw so the peer can resume the session.
+ */
 public abstract class NetworkConnection {
-    private ConnectionThread connThread = new ConnectionThread();
-    private Consumer<String> onReceiveCallback;
+    public interface FrameHandler {
+        // offset is the frame's type byte; the buffer is reused once this returns
+        void onFrame(ByteBuffer frame, int offset, int length);
+    }
+
+    // Which kind of thread runs the blocking read loop of each connection
+    public enum ThreadMode {
+        PLATFORM, VIRTUAL;
+
+        // -Dchess.threads=virtual selects virtual threads
+        public static ThreadMode configured() {
+            return "virtual".equalsIgnoreCase(System.getProperty("chess.threads")) ? VIRTUAL : PLATFORM;
+        }
+
+        public Thread start(String name, Runnable task) {
+            Thread thread = this == VIRTUAL
+                    ? Thread.ofVirtual().name(name).unstarted(task)
+                    : new ConnectionThread(name, task);
+            thread.start();
+            return thread;
+        }
+    }
+
+    public interface SessionHandler {
+        /**
+         * Called on the connection thread after each handshake, before any
+         * frame is read. resumed tells whether the previous session goes on;
+         * if so, peerSequence is the last of our events the peer received.
+         */
+        void onSession(boolean resumed, int peerSequence);
+    }
+
+    // What a send does when the queue is full: wait for the writer, or drop the peer
+    public enum OverflowPolicy {
+        BLOCK, DISCONNECT
+    }
+
+    public static final int DEFAULT_QUEUE_BYTES = 16 * 1024;
+    public static final long DEFAULT_HEARTBEAT_MILLIS = 1000;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+    public static final long DEFAULT_RECONNECT_MILLIS = 30_000;
+    private static final long MIN_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 4000;
+
+    // One timer thread pings for every connection in the process
+    private static final ScheduledExecutorService HEARTBEATS = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ThreadMode threadMode;
+    private FrameHandler onReceiveCallback;
+    private int queueBytes = DEFAULT_QUEUE_BYTES;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DISCONNECT;
+    private volatile SendQueue sendQueue;
+    private long heartbeatMillis = DEFAULT_HEARTBEAT_MILLIS;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private long reconnectMillis = DEFAULT_RECONNECT_MILLIS;
+    private Consumer<IOException> onDisconnect = e -> { };
+    private SessionHandler onSession = (resumed, sequence) -> { };
+    private IntSupplier lastSequence = () -> 0;
+    // 0 until a handshake has assigned one
+    private volatile long sessionToken;
+    private volatile long lastReceivedNanos;
+    // Smoothed like TCP's SRTT: each sample moves it an eighth of the way; 0 until measured
+    private volatile long smoothedRttNanos;
+
+    public NetworkConnection(FrameHandler onReceiveCallback) {
+        this(onReceiveCallback, ThreadMode.PLATFORM);
+    }
 
-    public NetworkConnection(Consumer<String> onReceiveCallback) {
+    public NetworkConnection(FrameHandler onReceiveCallback, ThreadMode threadMode) {
         this.onReceiveCallback = onReceiveCallback;
-        connThread.setDaemon(true);
+        this.threadMode = threadMode;
     }
 
     public void start() throws Exception {
-        connThread.start();
+        startThread("connection", this::connect);
+    }
+
+    // Takes effect for connections made after the call
+    public void setSendQueue(int capacityBytes, OverflowPolicy policy) {
+        if (capacityBytes < Protocol.MAX_FRAME) throw new IllegalArgumentException("Send queue smaller than a frame");
+        this.queueBytes = capacityBytes;
+        this.overflowPolicy = policy;
+    }
+
+    // Takes effect for connections made after the call
+    public void setHeartbeat(long intervalMillis, long timeoutMillis) {
+        if (intervalMillis <= 0 || timeoutMillis <= intervalMillis) {
+            throw new IllegalArgumentException("Timeout must exceed a positive heartbeat interval");
+        }
+        this.heartbeatMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // Called on the connection thread with the reason whenever an established connection ends
+    public void setDisconnectHandler(Consumer<IOException> onDisconnect) {
+        this.onDisconnect = onDisconnect;
+    }
+
+    // How long the connecting side keeps redialling after losing its peer; 0 gives up at once
+    public void setReconnect(long windowMillis) {
+        if (windowMillis < 0) throw new IllegalArgumentException("Negative reconnect window");
+        this.reconnectMillis = windowMillis;
+    }
+
+    public void setSessionHandler(SessionHandler onSession) {
+        this.onSession = onSession;
+    }
+
+    // The last game event received, offered in the HELLO when reconnecting
+    public void setLastSequence(IntSupplier lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+
+    // Smoothed round-trip time, or 0 before the first echo
+    public long rttMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(smoothedRttNanos);
+    }
+
+    public long oneWayLatencyMillis() {
+        return rttMillis() / 2;
+    }
+
+    // A MOVE, RESIGN, RESULT or NEW_GAME event with its data packed as in GameLog
+    public CompletableFuture<Void> sendEvent(int sequence, int type, int data) {
+        SendQueue queue = sendQueue;
+        ByteBuffer out = queue == null ? null : queue.begin(Protocol.FIXED_FRAME_BYTES);
+        if (out == null) return refused(queue);
+        Protocol.putEvent(out, sequence, type, data);
+        return queue.commit();
+    }
+
+    public CompletableFuture<Void> sendClock(long whiteMillis, long blackMillis) {
+        SendQueue queue = sendQueue;
+        ByteBuffer out = queue == null ? null : queue.begin(Protocol.FIXED_FRAME_BYTES);
+        if (out == null) return refused(queue);
+        Protocol.putClock(out, whiteMillis, blackMillis);
+        return queue.commit();
+    }
+
+    public CompletableFuture<Void> sendName(String name) {
+        SendQueue queue = sendQueue;
+        ByteBuffer out = queue == null ? null : queue.begin(Protocol.MAX_FRAME);
+        if (out == null) return refused(queue);
+        Protocol.putName(out, name);
+        return queue.commit();
     }
 
-    public void send(String data) throws Exception {
-        connThread.out.writeUTF(data);
-        connThread.out.flush();
+    private static CompletableFuture<Void> refused(SendQueue queue) {
+        return queue != null ? queue.refused()
+                : CompletableFuture.failedFuture(new IOException("Not connected"));
     }
+
     private volatile boolean isConnected = false;
+    // Handshakes completed so far
+    private volatile int sessions;
 
     public boolean isReady() {
         return isConnected;
@@ -28,24 +195,189 @@ public abstract class NetworkConnection {
 
     protected abstract Socket createSocket() throws Exception;
 
-    private class ConnectionThread extends Thread {
-        private DataInputStream in;
-        private DataOutputStream out;
+    protected Thread startThread(String name, Runnable task) {
+        return threadMode.start(name, task);
+    }
 
-        public void run() {
-            try (Socket socket = createSocket()) {
-                in = new DataInputStream(socket.getInputStream());
-                out = new DataOutputStream(socket.getOutputStream());
-                isConnected = true;
+    // The side that answers HELLO and hands out session tokens
+    protected boolean isAccepting() {
+        return false;
+    }
 
-                while (true) {
-                    String message = in.readUTF();
-                    onReceiveCallback.accept(message);
-                }
+    /**
+     * Called on the accepting side once a peer's HELLO is in; false drops the
+     * socket without an answer. resuming tells whether the peer offered this
+     * connection's session token.
+     */
+    protected boolean admit(Socket socket, boolean resuming) {
+        return true;
+    }
 
+    // Dials until a connection ends and no new one comes up within the reconnect window
+    protected void connect() {
+        long backoffMillis = MIN_BACKOFF_MILLIS;
+        long windowStart = System.nanoTime();
+        while (true) {
+            int sessionsBefore = sessions;
+            try (Socket socket = createSocket()) {
+                serve(socket);
             } catch (Exception e) {
-                e.printStackTrace();
+                if (reconnectMillis == 0) {
+                    e.printStackTrace();
+                    return;
+                }
+                System.out.println("Connection failed: " + e);
+            }
+            if (sessions != sessionsBefore) {
+                windowStart = System.nanoTime();
+                backoffMillis = MIN_BACKOFF_MILLIS;
+            }
+            if (System.nanoTime() - windowStart > TimeUnit.MILLISECONDS.toNanos(reconnectMillis)) {
+                System.out.println("Giving up after " + reconnectMillis + " ms without a connection");
+                return;
+            }
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    // Blocking read loop for one peer socket; returns when the peer goes away
+    protected void serve(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        ByteBuffer frame = ByteBuffer.allocate(Protocol.MAX_FRAME);
+
+        // The handshake happens before the writer exists, so it is written directly. Heartbeats
+        // don't run yet either, so a peer that never sends its HELLO is cut off by a read timeout
+        socket.setSoTimeout((int) timeoutMillis);
+        boolean resumed;
+        int peerSequence = 0;
+        if (isAccepting()) {
+            readHello(in, frame);
+            long token = Protocol.helloToken(frame, 0);
+            resumed = token != 0 && token == sessionToken;
+            if (!admit(socket, resumed)) return;
+            if (resumed) {
+                peerSequence = Protocol.helloSequence(frame, 0);
+            } else {
+                sessionToken = newToken();
+            }
+            writeHello(stream, frame, sessionToken, resumed ? lastSequence.getAsInt() : 0);
+        } else {
+            writeHello(stream, frame, sessionToken, sessionToken == 0 ? 0 : lastSequence.getAsInt());
+            readHello(in, frame);
+            long token = Protocol.helloToken(frame, 0);
+            resumed = token == sessionToken;
+            if (resumed) peerSequence = Protocol.helloSequence(frame, 0);
+            sessionToken = token;
+        }
+        socket.setSoTimeout(0);
+
+        SendQueue queue = new SendQueue(queueBytes, overflowPolicy, socket);
+        startThread("writer", () -> queue.writeLoop(stream));
+        sendQueue = queue;
+        smoothedRttNanos = 0;
+        lastReceivedNanos = System.nanoTime();
+        ScheduledFuture<?> heartbeat = HEARTBEATS.scheduleAtFixedRate(() -> heartbeat(queue),
+                heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        sessions++;
+        isConnected = true;
+        IOException reason = null;
+        try {
+            onSession.onSession(resumed, peerSequence);
+            while (true) {
+                int length = readFrame(in, frame);
+                lastReceivedNanos = System.nanoTime();
+                switch (Protocol.type(frame, 0)) {
+                    case Protocol.PING:
+                        ByteBuffer out = queue.tryBegin(Protocol.FIXED_FRAME_BYTES);
+                        if (out != null) {
+                            Protocol.putPong(out, frame, 0);
+                            queue.commit();
+                        }
+                        break;
+                    case Protocol.PONG:
+                        recordRtt(lastReceivedNanos - Protocol.timestamp(frame, 0));
+                        break;
+                    default:
+                        onReceiveCallback.onFrame(frame, 0, length);
+                        break;
+                }
             }
+        } catch (IOException e) {
+            reason = queue.closeReason() != null ? queue.closeReason() : e;
+            throw e;
+        } finally {
+            isConnected = false;
+            heartbeat.cancel(false);
+            queue.close(new IOException("Connection closed"));
+            onDisconnect.accept(reason != null ? reason : new IOException("Connection closed"));
+        }
+    }
+
+    // Runs on the heartbeat thread; never waits on a full queue
+    private void heartbeat(SendQueue queue) {
+        long silentNanos = System.nanoTime() - lastReceivedNanos;
+        if (silentNanos > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+            queue.close(new IOException("No data from peer for " + TimeUnit.NANOSECONDS.toMillis(silentNanos) + " ms"));
+            return;
+        }
+        ByteBuffer out = queue.tryBegin(Protocol.FIXED_FRAME_BYTES);
+        if (out == null) return;
+        Protocol.putPing(out, System.nanoTime());
+        queue.commit();
+    }
+
+    private static void writeHello(OutputStream stream, ByteBuffer frame, long token, int lastSequence) throws IOException {
+        frame.clear();
+        Protocol.putHello(frame, token, lastSequence);
+        stream.write(frame.array(), 0, frame.position());
+        stream.flush();
+        frame.clear();
+    }
+
+    private static void readHello(DataInputStream in, ByteBuffer frame) throws IOException {
+        readFrame(in, frame);
+        if (Protocol.type(frame, 0) != Protocol.HELLO || Protocol.version(frame, 0) != Protocol.VERSION) {
+            throw new IOException("Peer does not speak protocol version " + Protocol.VERSION);
+        }
+    }
+
+    static long newToken() {
+        long token;
+        do {
+            token = ThreadLocalRandom.current().nextLong();
+        } while (token == 0);
+        return token;
+    }
+
+    private void recordRtt(long sampleNanos) {
+        if (sampleNanos < 0) return;
+        long rtt = smoothedRttNanos;
+        smoothedRttNanos = rtt == 0 ? sampleNanos : rtt + (sampleNanos - rtt) / 8;
+    }
+
+    // Reads one frame into the buffer (type byte at 0) and returns its length
+    private static int readFrame(DataInputStream in, ByteBuffer frame) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length == 0 || length > frame.capacity() - Protocol.LENGTH_BYTES) {
+            throw new IOException("Bad frame length " + length);
+        }
+        in.readFully(frame.array(), 0, length);
+        Protocol.checkFrame(frame, 0, length);
+        return length;
+    }
+
+    // The original model: one daemon platform thread per connection
+    private static class ConnectionThread extends Thread {
+        ConnectionThread(String name, Runnable task) {
+            super(task, name);
+            setDaemon(true);
         }
     }
-}
\ No newline at end of file
+}
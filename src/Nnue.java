@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A small efficiently-updatable neural network evaluator. The input is one
+ * feature per (piece, square), seen from each side: the side's own pieces
+ * first and the board flipped for Black. The first layer's output for both
+ * sides, the accumulator, hangs off the {@link Position} and is updated as
+ * pieces are put and removed, so a move costs a few row additions instead
+ * of a pass over all 768 inputs. The two halves, the side to move's first,
+ * are clipped to [0, 1] and go through a clipped dense layer to a score in
+ * centipawns.
+ *
+ * The file is "CNN1", the hidden and second-layer sizes, then big-endian
+ * feature weights and biases as shorts and the dense layers as floats, in
+ * the order of the fields below. Set -Dchess.nnue to use one in place of
+ * {@link Evaluation}'s tables.
+ */
+public final class Nnue {
+    static final int FEATURES = 12 * 64;
+    private static final byte[] MAGIC = "CNN1".getBytes(StandardCharsets.US_ASCII);
+    // Well inside the search's mate scores
+    private static final int MAX_SCORE = 20_000;
+
+    final int hidden;
+    final int second;
+    // [feature][hidden], a feature's row contiguous for the incremental updates
+    final short[] featureWeights;
+    final short[] featureBias;
+    // [second][2 * hidden] and [second]
+    final float[] weights1;
+    final float[] bias1;
+    final float[] weights2;
+    final float bias2;
+    final NnueKernels kernels;
+
+    Nnue(int hidden, int second, short[] featureWeights, short[] featureBias,
+         float[] weights1, float[] bias1, float[] weights2, float bias2, NnueKernels kernels) {
+        this.hidden = hidden;
+        this.second = second;
+        this.featureWeights = featureWeights;
+        this.featureBias = featureBias;
+        this.weights1 = weights1;
+        this.bias1 = bias1;
+        this.weights2 = weights2;
+        this.bias2 = bias2;
+        this.kernels = kernels;
+    }
+
+    /** Both sides' first-layer sums for one position, and scratch space for the rest of the network. */
+    static final class Accumulator {
+        private final Nnue network;
+        private final short[][] sums;
+        private final float[] input;
+        private final float[] output;
+
+        Accumulator(Nnue network) {
+            this.network = network;
+            sums = new short[][]{new short[network.hidden], new short[network.hidden]};
+            input = new float[2 * network.hidden];
+            output = new float[network.second];
+        }
+
+        void refresh(Position pos) {
+            for (int side = Piece.WHITE; side <= Piece.BLACK; side++) {
+                System.arraycopy(network.featureBias, 0, sums[side], 0, network.hidden);
+            }
+            for (long occupied = pos.occupied(); occupied != 0; occupied &= occupied - 1) {
+                int square = Long.numberOfTrailingZeros(occupied);
+                add(pos.pieceAt(square), square);
+            }
+        }
+
+        void add(int piece, int square) {
+            network.kernels.add(sums[Piece.WHITE], network.featureWeights, feature(Piece.WHITE, piece, square) * network.hidden);
+            network.kernels.add(sums[Piece.BLACK], network.featureWeights, feature(Piece.BLACK, piece, square) * network.hidden);
+        }
+
+        void remove(int piece, int square) {
+            network.kernels.subtract(sums[Piece.WHITE], network.featureWeights, feature(Piece.WHITE, piece, square) * network.hidden);
+            network.kernels.subtract(sums[Piece.BLACK], network.featureWeights, feature(Piece.BLACK, piece, square) * network.hidden);
+        }
+    }
+
+    private static final class Shared {
+        static final Nnue INSTANCE = load();
+
+        private static Nnue load() {
+            String file = System.getProperty("chess.nnue");
+            if (file == null) return null;
+            try {
+                return read(Path.of(file), NnueKernels.best());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Evaluating without the network: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    // The network named by -Dchess.nnue, or null
+    public static Nnue configured() {
+        return Shared.INSTANCE;
+    }
+
+    // Own pieces are 0-5 and the opponent's 6-11, on a board seen from the side's end
+    static int feature(int side, int piece, int square) {
+        int relative = Piece.color(piece) == side ? Piece.type(piece) : 6 + Piece.type(piece);
+        return relative * 64 + (side == Piece.WHITE ? square : square ^ 56);
+    }
+
+    // Side to move's view; the accumulator is attached to the position on first use
+    public int evaluate(Position pos) {
+        Accumulator accumulator = pos.accumulator;
+        if (accumulator == null || accumulator.network != this) {
+            accumulator = new Accumulator(this);
+            accumulator.refresh(pos);
+            pos.accumulator = accumulator;
+        }
+        return forward(accumulator, pos.sideToMove());
+    }
+
+    // Recomputes the first layer from every piece, as if nothing were incremental
+    int evaluateFromScratch(Position pos, Accumulator scratch) {
+        scratch.refresh(pos);
+        return forward(scratch, pos.sideToMove());
+    }
+
+    private int forward(Accumulator accumulator, int sideToMove) {
+        kernels.activate(accumulator.sums[sideToMove], accumulator.input, 0);
+        kernels.activate(accumulator.sums[sideToMove ^ 1], accumulator.input, hidden);
+        float[] output = accumulator.output;
+        kernels.dense(accumulator.input, weights1, bias1, output);
+        float score = bias2;
+        for (int j = 0; j < second; j++) {
+            score += weights2[j] * Math.max(0f, Math.min(output[j], 1f));
+        }
+        return Math.max(-MAX_SCORE, Math.min(Math.round(score), MAX_SCORE));
+    }
+
+    public static Nnue read(Path file, NnueKernels kernels) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        byte[] magic = new byte[MAGIC.length];
+        in.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException(file + " is not a network");
+        int hidden = in.getInt(), second = in.getInt();
+        if (in.remaining() != 2 * (FEATURES * hidden + hidden) + 4 * (second * 2 * hidden + 2 * second + 1)) {
+            throw new IOException(file + " does not hold a " + hidden + "x" + second + " network");
+        }
+        short[] featureWeights = new short[FEATURES * hidden];
+        short[] featureBias = new short[hidden];
+        float[] weights1 = new float[second * 2 * hidden];
+        float[] bias1 = new float[second];
+        float[] weights2 = new float[second];
+        in.asShortBuffer().get(featureWeights);
+        in.position(in.position() + 2 * featureWeights.length);
+        in.asShortBuffer().get(featureBias);
+        in.position(in.position() + 2 * featureBias.length);
+        in.asFloatBuffer().get(weights1);
+        in.position(in.position() + 4 * weights1.length);
+        in.asFloatBuffer().get(bias1);
+        in.position(in.position() + 4 * bias1.length);
+        in.asFloatBuffer().get(weights2);
+        in.position(in.position() + 4 * weights2.length);
+        return new Nnue(hidden, second, featureWeights, featureBias, weights1, bias1, weights2, in.getFloat(), kernels);
+    }
+
+    public void write(Path file) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(MAGIC.length + 8 + 2 * (featureWeights.length + featureBias.length)
+                + 4 * (weights1.length + bias1.length + weights2.length + 1));
+        out.put(MAGIC).putInt(hidden).putInt(second);
+        for (short w : featureWeights) out.putShort(w);
+        for (short b : featureBias) out.putShort(b);
+        for (float w : weights1) out.putFloat(w);
+        for (float b : bias1) out.putFloat(b);
+        for (float w : weights2) out.putFloat(w);
+        out.putFloat(bias2);
+        Files.write(file, out.array());
+    }
+
+    // Untrained weights of a realistic size and range, for benchmarks and tests of the plumbing
+    static Nnue random(int hidden, int second, long seed, NnueKernels kernels) {
+        Random random = new Random(seed);
+        short[] featureWeights = new short[FEATURES * hidden];
+        short[] featureBias = new short[hidden];
+        float[] weights1 = new float[second * 2 * hidden];
+        float[] bias1 = new float[second];
+        float[] weights2 = new float[second];
+        for (int i = 0; i < featureWeights.length; i++) featureWeights[i] = (short) (random.nextInt(64) - 32);
+        for (int i = 0; i < featureBias.length; i++) featureBias[i] = (short) random.nextInt(128);
+        for (int i = 0; i < weights1.length; i++) weights1[i] = (float) random.nextGaussian() / hidden;
+        for (int i = 0; i < bias1.length; i++) bias1[i] = 0.5f;
+        for (int i = 0; i < weights2.length; i++) weights2[i] = (float) random.nextGaussian() * 100;
+        return new Nnue(hidden, second, featureWeights, featureBias, weights1, bias1, weights2, 0f, kernels);
+    }
+
+    // The same weights on other kernels
+    Nnue withKernels(NnueKernels other) {
+        return new Nnue(hidden, second, featureWeights, featureBias, weights1, bias1, weights2, bias2, other);
+    }
+}
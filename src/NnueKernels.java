@@ -0,0 +1,41 @@
+/**
+ * The arithmetic of {@link Nnue}'s layers. {@link SimdKernels} runs it on
+ * the Vector API; {@link ScalarKernels} is the plain-Java fallback and the
+ * reference the SIMD version is checked against. The short kernels and
+ * activate give the same results in both, but dense does not: the SIMD
+ * version fuses each multiply with its add and sums the lanes in another
+ * order, so its floats differ in the last bits and a score can end up a
+ * centipawn apart.
+ */
+interface NnueKernels {
+    // Accumulator range that activates, as a quantized 1.0
+    short ACTIVATION_MAX = 255;
+
+    // accumulator[i] += weights[offset + i]
+    void add(short[] accumulator, short[] weights, int offset);
+
+    // accumulator[i] -= weights[offset + i]
+    void subtract(short[] accumulator, short[] weights, int offset);
+
+    // out[offset + i] = clamp(accumulator[i], 0, ACTIVATION_MAX) / ACTIVATION_MAX
+    void activate(short[] accumulator, float[] out, int offset);
+
+    // out[j] = bias[j] + sum over i of weights[j * in.length + i] * in[i]
+    void dense(float[] in, float[] weights, float[] bias, float[] out);
+
+    // The kernels in use, for reports
+    String name();
+
+    static NnueKernels best() {
+        if (!Boolean.parseBoolean(System.getProperty("chess.nnue.simd", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarKernels();
+        }
+        // Loaded by name so that without the incubator module only the scalar class is touched
+        try {
+            return (NnueKernels) Class.forName("SimdKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarKernels();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft: counts leaf nodes of the legal move tree and checks them against
+ * published values for the standard test positions. Root moves are split
+ * across a fork-join pool, each subtree searching its own Position copy.
+ *
+ * Usage: java Perft [-d maxDepth] [-t threads] [fen depth]
+ */
+public final class Perft {
+    // name, FEN, then node counts for depth 1, 2, 3, ...
+    static final Object[][] SUITE = {
+            {"startpos", Position.START_FEN,
+                    new long[]{20, 400, 8902, 197281, 4865609, 119060324}},
+            {"kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    new long[]{48, 2039, 97862, 4085603, 193690690}},
+            {"position3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    new long[]{14, 191, 2812, 43238, 674624, 11030083, 178633661}},
+            {"position4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    new long[]{6, 264, 9467, 422333, 15833292, 706045033}},
+            {"position5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    new long[]{44, 1486, 62379, 2103487, 89941194}},
+            {"position6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    new long[]{46, 2079, 89890, 3894594, 164075551}},
+            // A diagonal pin along a line that crosses the promotion square
+            {"diagpin", "2K2r2/4P3/8/8/8/8/8/3k4 w - - 0 1",
+                    new long[]{11, 133, 1442, 19174, 266199, 3821001}},
+    };
+
+    static final int MAX_DEPTH = 64;
+
+    private final int[][] buffers = new int[MAX_DEPTH][MoveGenerator.MAX_MOVES];
+
+    // Sequential count; the last ply is counted from the move list without being played
+    public long perft(Position pos, int depth) {
+        checkDepth(depth);
+        return count(pos, depth);
+    }
+
+    private long count(Position pos, int depth) {
+        if (depth == 0) return 1;
+        int[] moves = buffers[depth];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        if (depth == 1) return count;
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            nodes += count(pos, depth - 1);
+            pos.unmakeMove(moves[i]);
+        }
+        return nodes;
+    }
+
+    public static long parallelPerft(Position pos, int depth, ForkJoinPool pool) {
+        checkDepth(depth);
+        if (depth <= 2) return new Perft().perft(pos, depth);
+        return pool.invoke(new RootTask(pos, depth));
+    }
+
+    // One move list per ply
+    private static void checkDepth(int depth) {
+        if (depth < 0 || depth >= MAX_DEPTH) throw new IllegalArgumentException("Perft depth must be 0 to " + (MAX_DEPTH - 1));
+    }
+
+    // Fork-join tasks are never serialized; the fields are transient to say so
+    private static final class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        private final transient Position pos;
+        private final int depth;
+
+        RootTask(Position pos, int depth) {
+            this.pos = pos;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generateLegal(pos, moves);
+            SubtreeTask[] tasks = new SubtreeTask[count];
+            for (int i = 0; i < count; i++) {
+                Position child = pos.copy();
+                child.makeMove(moves[i]);
+                tasks[i] = new SubtreeTask(child, depth - 1);
+            }
+            invokeAll(tasks);
+            long nodes = 0;
+            for (SubtreeTask task : tasks) {
+                nodes += task.getRawResult();
+            }
+            return nodes;
+        }
+    }
+
+    private static final class SubtreeTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        private final transient Position pos;
+        private final int depth;
+
+        SubtreeTask(Position pos, int depth) {
+            this.pos = pos;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            return new Perft().perft(pos, depth);
+        }
+    }
+
+    public static void main(String[] args) {
+        int maxDepth = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String fen = null;
+        int fenDepth = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-d": maxDepth = Integer.parseInt(args[++i]); break;
+                case "-t": threads = Integer.parseInt(args[++i]); break;
+                default:
+                    fen = args[i];
+                    fenDepth = Integer.parseInt(args[++i]);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        if (fen != null) {
+            Position pos = Position.fromFen(fen);
+            long start = System.nanoTime();
+            long nodes = parallelPerft(pos, fenDepth, pool);
+            report(fen, fenDepth, nodes, -1, System.nanoTime() - start);
+            return;
+        }
+
+        boolean ok = true;
+        long totalNodes = 0, totalNanos = 0;
+        for (Object[] entry : SUITE) {
+            long[] expected = (long[]) entry[2];
+            Position pos = Position.fromFen((String) entry[1]);
+            for (int depth = 1; depth <= Math.min(maxDepth, expected.length); depth++) {
+                long start = System.nanoTime();
+                long nodes = parallelPerft(pos, depth, pool);
+                long nanos = System.nanoTime() - start;
+                ok &= report((String) entry[0], depth, nodes, expected[depth - 1], nanos);
+                totalNodes += nodes;
+                totalNanos += nanos;
+            }
+        }
+        System.out.printf("%s: %d nodes in %.2fs (%,d nodes/s, %d threads)%n", ok ? "PASS" : "FAIL",
+                totalNodes, totalNanos / 1e9, totalNodes * 1_000_000_000L / Math.max(1, totalNanos), threads);
+        pool.shutdown();
+        if (!ok) System.exit(1);
+    }
+
+    private static boolean report(String name, int depth, long nodes, long expected, long nanos) {
+        boolean ok = expected < 0 || nodes == expected;
+        System.out.printf("%-10s depth %d: %,15d nodes %8.3fs %,14d nodes/s %s%n", name, depth, nodes, nanos / 1e9,
+                nodes * 1_000_000_000L / Math.max(1, nanos), expected < 0 ? "" : ok ? "ok" : "MISMATCH (expected " + expected + ")");
+        return ok;
+    }
+}
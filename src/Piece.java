@@ -0,0 +1,69 @@
+/**
+ * Integer piece encoding shared by the rules engine and the UI.
+ * A piece is {@code color * 6 + type}; {@link #NONE} marks an empty square.
+ */
+public final class Piece {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int NONE = -1;
+
+    private static final String TYPE_CHARS = "PNBRQK";
+
+    private Piece() {
+    }
+
+    public static int make(int color, int type) {
+        return color * 6 + type;
+    }
+
+    public static int color(int piece) {
+        return piece >= 6 ? BLACK : WHITE;
+    }
+
+    public static int type(int piece) {
+        return piece >= 6 ? piece - 6 : piece;
+    }
+
+    public static char typeChar(int piece) {
+        return TYPE_CHARS.charAt(type(piece));
+    }
+
+    // "w" / "b", as used by Main's currentPlayer
+    public static int colorOf(String color) {
+        return color.charAt(0) == 'w' ? WHITE : BLACK;
+    }
+
+    public static String colorName(int color) {
+        return color == WHITE ? "w" : "b";
+    }
+
+    // "wP", "bK", ... the notation the UI has always used
+    public static String code(int piece) {
+        if (piece == NONE) return null;
+        return colorName(color(piece)) + typeChar(piece);
+    }
+
+    public static int fromCode(String code) {
+        if (code == null) return NONE;
+        return make(colorOf(code), TYPE_CHARS.indexOf(code.charAt(1)));
+    }
+
+    public static char fenChar(int piece) {
+        char c = typeChar(piece);
+        return color(piece) == WHITE ? c : Character.toLowerCase(c);
+    }
+
+    public static int fromFenChar(char c) {
+        int type = TYPE_CHARS.indexOf(Character.toUpperCase(c));
+        if (type < 0) return NONE;
+        return make(Character.isUpperCase(c) ? WHITE : BLACK, type);
+    }
+}
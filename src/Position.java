@@ -0,0 +1,421 @@
+/**
+ * Bitboard chess position: twelve piece bitboards, per-colour and total
+ * occupancy, plus side to move, castling rights and the en-passant square.
+ * A mailbox mirror answers "what is on this square" without scanning.
+ */
+public class Position {
+    public static final int WHITE_OO = 1;
+    public static final int WHITE_OOO = 2;
+    public static final int BLACK_OO = 4;
+    public static final int BLACK_OOO = 8;
+
+    public static final int NO_SQUARE = -1;
+
+    // Rights that survive a move touching each square
+    private static final int[] CASTLE_MASK = new int[64];
+
+    static {
+        java.util.Arrays.fill(CASTLE_MASK, WHITE_OO | WHITE_OOO | BLACK_OO | BLACK_OOO);
+        CASTLE_MASK[0] &= ~WHITE_OOO;
+        CASTLE_MASK[7] &= ~WHITE_OO;
+        CASTLE_MASK[4] &= ~(WHITE_OO | WHITE_OOO);
+        CASTLE_MASK[56] &= ~BLACK_OOO;
+        CASTLE_MASK[63] &= ~BLACK_OO;
+        CASTLE_MASK[60] &= ~(BLACK_OO | BLACK_OOO);
+    }
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    final long[] pieces = new long[12];
+    final long[] occupancy = new long[2];
+    long occupied;
+    final int[] board = new int[64];
+
+    int sideToMove = Piece.WHITE;
+    int castlingRights;
+    int epSquare = NO_SQUARE;
+    int halfmoveClock;
+    int fullmoveNumber = 1;
+    long key;
+
+    // One packed entry per made move: captured piece, castling rights, en-passant square, halfmove clock.
+    // keyHistory holds the Zobrist key before each move, for repetition detection.
+    private long[] undoStack = new long[256];
+    private long[] keyHistory = new long[256];
+    private int undoCount;
+
+    // Network first-layer sums kept in step with the pieces once an Nnue evaluates this position
+    Nnue.Accumulator accumulator;
+
+    public Position() {
+        java.util.Arrays.fill(board, Piece.NONE);
+    }
+
+    public static Position startPosition() {
+        return fromFen(START_FEN);
+    }
+
+    public static Position fromFen(String fen) {
+        Position pos = new Position();
+        String[] parts = fen.trim().split("\\s+");
+        int rank = 7, file = 0;
+        for (char c : parts[0].toCharArray()) {
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (Character.isDigit(c)) {
+                file += c - '0';
+            } else {
+                int piece = Piece.fromFenChar(c);
+                if (piece == Piece.NONE || rank < 0 || file > 7) {
+                    throw new IllegalArgumentException("Bad FEN: " + fen);
+                }
+                pos.putPiece(piece, rank * 8 + file);
+                file++;
+            }
+        }
+        pos.sideToMove = parts.length > 1 && parts[1].equals("b") ? Piece.BLACK : Piece.WHITE;
+        if (parts.length > 2) {
+            for (char c : parts[2].toCharArray()) {
+                switch (c) {
+                    case 'K': pos.castlingRights |= WHITE_OO; break;
+                    case 'Q': pos.castlingRights |= WHITE_OOO; break;
+                    case 'k': pos.castlingRights |= BLACK_OO; break;
+                    case 'q': pos.castlingRights |= BLACK_OOO; break;
+                }
+            }
+        }
+        if (parts.length > 3 && !parts[3].equals("-")) pos.epSquare = Bitboards.parseSquare(parts[3]);
+        if (parts.length > 4) pos.halfmoveClock = Integer.parseInt(parts[4]);
+        if (parts.length > 5) pos.fullmoveNumber = Integer.parseInt(parts[5]);
+        pos.key = Zobrist.compute(pos);
+        return pos;
+    }
+
+    public String toFen() {
+        StringBuilder sb = new StringBuilder();
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = board[rank * 8 + file];
+                if (piece == Piece.NONE) {
+                    empty++;
+                } else {
+                    if (empty > 0) sb.append(empty);
+                    empty = 0;
+                    sb.append(Piece.fenChar(piece));
+                }
+            }
+            if (empty > 0) sb.append(empty);
+            if (rank > 0) sb.append('/');
+        }
+        sb.append(sideToMove == Piece.WHITE ? " w " : " b ");
+        if (castlingRights == 0) sb.append('-');
+        if ((castlingRights & WHITE_OO) != 0) sb.append('K');
+        if ((castlingRights & WHITE_OOO) != 0) sb.append('Q');
+        if ((castlingRights & BLACK_OO) != 0) sb.append('k');
+        if ((castlingRights & BLACK_OOO) != 0) sb.append('q');
+        sb.append(' ').append(epSquare == NO_SQUARE ? "-" : Bitboards.squareName(epSquare));
+        sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return sb.toString();
+    }
+
+    // Independent copy including move history, so repetitions and unmake work on either side
+    public Position copy() {
+        Position pos = new Position();
+        System.arraycopy(pieces, 0, pos.pieces, 0, 12);
+        System.arraycopy(occupancy, 0, pos.occupancy, 0, 2);
+        System.arraycopy(board, 0, pos.board, 0, 64);
+        pos.occupied = occupied;
+        pos.sideToMove = sideToMove;
+        pos.castlingRights = castlingRights;
+        pos.epSquare = epSquare;
+        pos.halfmoveClock = halfmoveClock;
+        pos.fullmoveNumber = fullmoveNumber;
+        pos.key = key;
+        pos.undoStack = undoStack.clone();
+        pos.keyHistory = keyHistory.clone();
+        pos.undoCount = undoCount;
+        // The accumulator is not shared; the copy gets its own when it is first evaluated
+        return pos;
+    }
+
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    public int pieceAt(int row, int col) {
+        return board[Bitboards.square(row, col)];
+    }
+
+    public long pieces(int piece) {
+        return pieces[piece];
+    }
+
+    public long pieces(int color, int type) {
+        return pieces[Piece.make(color, type)];
+    }
+
+    public long occupancy(int color) {
+        return occupancy[color];
+    }
+
+    public long occupied() {
+        return occupied;
+    }
+
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int color) {
+        if (color != sideToMove) key ^= Zobrist.SIDE;
+        sideToMove = color;
+    }
+
+    public int castlingRights() {
+        return castlingRights;
+    }
+
+    public int epSquare() {
+        return epSquare;
+    }
+
+    // Key of the en passant file, hashed only when a pawn of the side to move could capture
+    // there, so that a double push nobody can take transposes with the other move orders
+    long epKey() {
+        if (epSquare == NO_SQUARE) return 0;
+        long capturers = Bitboards.PAWN_ATTACKS[sideToMove ^ 1][epSquare] & pieces(sideToMove, Piece.PAWN);
+        return capturers != 0 ? Zobrist.EP_FILE[epSquare & 7] : 0;
+    }
+
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public long key() {
+        return key;
+    }
+
+    // Earlier occurrences of the current position since the last capture or pawn move
+    public int repetitionCount() {
+        int count = 0;
+        int limit = Math.max(0, undoCount - halfmoveClock);
+        for (int i = undoCount - 4; i >= limit; i -= 2) {
+            if (keyHistory[i] == key) count++;
+        }
+        return count;
+    }
+
+    public boolean isThreefoldRepetition() {
+        return repetitionCount() >= 2;
+    }
+
+    public boolean isFiftyMoveDraw() {
+        return halfmoveClock >= 100;
+    }
+
+    public int kingSquare(int color) {
+        long king = pieces[Piece.make(color, Piece.KING)];
+        return king == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(king);
+    }
+
+    // Pieces of either colour attacking the square, given an occupancy
+    public long attackersTo(int square, long occupied) {
+        long rooksQueens = pieces[Piece.make(Piece.WHITE, Piece.ROOK)] | pieces[Piece.make(Piece.BLACK, Piece.ROOK)]
+                | pieces[Piece.make(Piece.WHITE, Piece.QUEEN)] | pieces[Piece.make(Piece.BLACK, Piece.QUEEN)];
+        long bishopsQueens = pieces[Piece.make(Piece.WHITE, Piece.BISHOP)] | pieces[Piece.make(Piece.BLACK, Piece.BISHOP)]
+                | pieces[Piece.make(Piece.WHITE, Piece.QUEEN)] | pieces[Piece.make(Piece.BLACK, Piece.QUEEN)];
+        return (Bitboards.pawnAttacks(Piece.BLACK, square) & pieces[Piece.make(Piece.WHITE, Piece.PAWN)])
+                | (Bitboards.pawnAttacks(Piece.WHITE, square) & pieces[Piece.make(Piece.BLACK, Piece.PAWN)])
+                | (Bitboards.knightAttacks(square)
+                        & (pieces[Piece.make(Piece.WHITE, Piece.KNIGHT)] | pieces[Piece.make(Piece.BLACK, Piece.KNIGHT)]))
+                | (Bitboards.kingAttacks(square)
+                        & (pieces[Piece.make(Piece.WHITE, Piece.KING)] | pieces[Piece.make(Piece.BLACK, Piece.KING)]))
+                | (Bitboards.rookAttacks(square, occupied) & rooksQueens)
+                | (Bitboards.bishopAttacks(square, occupied) & bishopsQueens);
+    }
+
+    public boolean isSquareAttacked(int square, int byColor) {
+        long them = occupancy[byColor];
+        long queens = pieces[Piece.make(byColor, Piece.QUEEN)];
+        return (Bitboards.pawnAttacks(byColor ^ 1, square) & pieces[Piece.make(byColor, Piece.PAWN)]) != 0
+                || (Bitboards.knightAttacks(square) & pieces[Piece.make(byColor, Piece.KNIGHT)]) != 0
+                || (Bitboards.kingAttacks(square) & pieces[Piece.make(byColor, Piece.KING)]) != 0
+                || (Bitboards.rookAttacks(square, occupied)
+                        & (pieces[Piece.make(byColor, Piece.ROOK)] | queens) & them) != 0
+                || (Bitboards.bishopAttacks(square, occupied)
+                        & (pieces[Piece.make(byColor, Piece.BISHOP)] | queens) & them) != 0;
+    }
+
+    // Every square attacked by the given colour
+    public long attacks(int color) {
+        long attacked = 0;
+        for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+            long bb = pieces[Piece.make(color, type)];
+            while (bb != 0) {
+                int sq = Long.numberOfTrailingZeros(bb);
+                bb &= bb - 1;
+                attacked |= attacksFrom(Piece.make(color, type), sq, occupied);
+            }
+        }
+        return attacked;
+    }
+
+    public static long attacksFrom(int piece, int square, long occupied) {
+        switch (Piece.type(piece)) {
+            case Piece.PAWN: return Bitboards.pawnAttacks(Piece.color(piece), square);
+            case Piece.KNIGHT: return Bitboards.knightAttacks(square);
+            case Piece.BISHOP: return Bitboards.bishopAttacks(square, occupied);
+            case Piece.ROOK: return Bitboards.rookAttacks(square, occupied);
+            case Piece.QUEEN: return Bitboards.queenAttacks(square, occupied);
+            default: return Bitboards.kingAttacks(square);
+        }
+    }
+
+    public boolean isInCheck(int color) {
+        int king = kingSquare(color);
+        return king != NO_SQUARE && isSquareAttacked(king, color ^ 1);
+    }
+
+    // Enemy pieces giving check to the side to move
+    public long checkers() {
+        int king = kingSquare(sideToMove);
+        if (king == NO_SQUARE) return 0;
+        return attackersTo(king, occupied) & occupancy[sideToMove ^ 1];
+    }
+
+    // Pieces of the given colour that are the only blocker between their king and an enemy slider
+    public long pinned(int color) {
+        int king = kingSquare(color);
+        if (king == NO_SQUARE) return 0;
+        int them = color ^ 1;
+        long queens = pieces[Piece.make(them, Piece.QUEEN)];
+        long snipers = (Bitboards.rookAttacks(king, 0) & (pieces[Piece.make(them, Piece.ROOK)] | queens))
+                | (Bitboards.bishopAttacks(king, 0) & (pieces[Piece.make(them, Piece.BISHOP)] | queens));
+        long pinned = 0;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.between(king, sniper) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) pinned |= blockers & occupancy[color];
+        }
+        return pinned;
+    }
+
+    public void putPiece(int piece, int square) {
+        long b = 1L << square;
+        pieces[piece] |= b;
+        occupancy[Piece.color(piece)] |= b;
+        occupied |= b;
+        board[square] = piece;
+        key ^= Zobrist.PIECE_SQUARE[piece][square];
+        if (accumulator != null) accumulator.add(piece, square);
+    }
+
+    public void removePiece(int square) {
+        int piece = board[square];
+        if (piece == Piece.NONE) return;
+        long b = ~(1L << square);
+        pieces[piece] &= b;
+        occupancy[Piece.color(piece)] &= b;
+        occupied &= b;
+        board[square] = Piece.NONE;
+        key ^= Zobrist.PIECE_SQUARE[piece][square];
+        if (accumulator != null) accumulator.remove(piece, square);
+    }
+
+    // Relocates a piece, capturing whatever stands on the target square
+    public void movePiece(int from, int to) {
+        int piece = board[from];
+        removePiece(to);
+        removePiece(from);
+        putPiece(piece, to);
+    }
+
+    // Plays a move produced by MoveGenerator, including castling, en passant and promotion.
+    // Undo state goes onto a preallocated stack so unmakeMove can restore it without garbage.
+    public void makeMove(int move) {
+        int from = Move.from(move), to = Move.to(move), flags = Move.flags(move);
+        int us = sideToMove;
+        int piece = board[from];
+        int captureSquare = flags == Move.EN_PASSANT ? to + (us == Piece.WHITE ? -8 : 8) : to;
+        int captured = board[captureSquare];
+
+        if (undoCount == undoStack.length) {
+            undoStack = java.util.Arrays.copyOf(undoStack, undoCount * 2);
+            keyHistory = java.util.Arrays.copyOf(keyHistory, undoCount * 2);
+        }
+        keyHistory[undoCount] = key;
+        undoStack[undoCount++] = (captured + 1)
+                | ((long) castlingRights << 4)
+                | ((long) (epSquare + 1) << 8)
+                | ((long) halfmoveClock << 16);
+
+        key ^= epKey();
+        halfmoveClock++;
+        if (captured != Piece.NONE) {
+            removePiece(captureSquare);
+            halfmoveClock = 0;
+        }
+        removePiece(from);
+        putPiece(Move.isPromotion(move) ? Piece.make(us, Move.promotionType(move)) : piece, to);
+        if (Piece.type(piece) == Piece.PAWN) halfmoveClock = 0;
+
+        if (flags == Move.KING_CASTLE) {
+            movePiece(from + 3, from + 1);
+        } else if (flags == Move.QUEEN_CASTLE) {
+            movePiece(from - 4, from - 1);
+        }
+
+        epSquare = flags == Move.DOUBLE_PUSH ? (from + to) >>> 1 : NO_SQUARE;
+        key ^= Zobrist.CASTLING[castlingRights];
+        castlingRights &= CASTLE_MASK[from] & CASTLE_MASK[to];
+        key ^= Zobrist.CASTLING[castlingRights] ^ Zobrist.SIDE;
+        if (us == Piece.BLACK) fullmoveNumber++;
+        sideToMove = us ^ 1;
+        key ^= epKey();
+    }
+
+    // Reverts the last makeMove; move must be the move that was made
+    public void unmakeMove(int move) {
+        int from = Move.from(move), to = Move.to(move), flags = Move.flags(move);
+        int us = sideToMove ^ 1;
+        long state = undoStack[--undoCount];
+
+        sideToMove = us;
+        if (us == Piece.BLACK) fullmoveNumber--;
+
+        if (flags == Move.KING_CASTLE) {
+            movePiece(from + 1, from + 3);
+        } else if (flags == Move.QUEEN_CASTLE) {
+            movePiece(from - 1, from - 4);
+        }
+
+        int piece = board[to];
+        removePiece(to);
+        putPiece(Move.isPromotion(move) ? Piece.make(us, Piece.PAWN) : piece, from);
+
+        int captured = (int) (state & 15) - 1;
+        if (captured != Piece.NONE) {
+            putPiece(captured, flags == Move.EN_PASSANT ? to + (us == Piece.WHITE ? -8 : 8) : to);
+        }
+        castlingRights = (int) (state >>> 4) & 15;
+        epSquare = (int) ((state >>> 8) & 0xFF) - 1;
+        halfmoveClock = (int) (state >>> 16);
+        key = keyHistory[undoCount];
+    }
+
+    // True if the pseudo-legal move does not leave the mover's king attacked
+    public boolean isLegal(int move) {
+        int us = sideToMove;
+        makeMove(move);
+        boolean legal = !isInCheck(us);
+        unmakeMove(move);
+        return legal;
+    }
+}
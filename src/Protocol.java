@@ -0,0 +1,341 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary wire protocol shared by peers, {@link GameServer} and its clients.
+ * All integers are big-endian.
+ *
+ * <pre>
+ * frame   = length:u16 type:u8 payload      (length counts type + payload)
+ *
+ * HELLO    0x01  version:u8 token:u64 seq:u32   first frame in each direction
+ * MOVE     0x02  seq:u32 move:u16               from | to &lt;&lt; 6 | promotion &lt;&lt; 12
+ * NAME     0x03  name:utf-8
+ * RESIGN   0x04  seq:u32 color:u8
+ * RESULT   0x05  seq:u32 status:u8 winner:u8    Game.Status ordinal, colour or 0xFF
+ * COLOR    0x06  color:u8                       0 white, 1 black (sent by a GameServer)
+ * PING     0x07  nanos:u64                      sender's clock, echoed back in the PONG
+ * PONG     0x08  nanos:u64
+ * NEW_GAME 0x09  seq:u32                        the board starts over
+ * CLOCK    0x0A  white:u32 black:u32            remaining milliseconds
+ * WATCH    0x0B  version:u8 game:u32            a spectator's first frame, instead of HELLO
+ * POSITION 0x0C  seq:u32 fen:utf-8              spectators: the board as of event seq
+ * </pre>
+ *
+ * Squares are 0 (a1) to 63 (h8); promotion is 0 for none, else 1-4 for
+ * knight, bishop, rook, queen. A move costs 5 bytes on the wire against
+ * 9 for the old "r c r c" text, and decoding it is two byte loads.
+ * A peer whose HELLO carries another version is disconnected. PING and PONG
+ * are handled by the connection itself and never reach the game.
+ *
+ * MOVE, RESIGN, RESULT and NEW_GAME are game events. Each direction of a
+ * session numbers its events from 1, one up per event, across games; a
+ * receiver drops any event that isn't the next one, except that a NEW_GAME
+ * may skip ahead. HELLO's seq is the last event the sender has received.
+ * The connecting side offers the session token it was given before (0 if
+ * none); the accepting side answers with the token it keeps. If the tokens
+ * match the session resumes: each side resends the events the other missed
+ * (see {@link GameLog}) and the side holding the authoritative clock follows
+ * them with a CLOCK frame. Otherwise both sides start afresh.
+ *
+ * A spectator opens with WATCH, naming a game server room (0 for the newest
+ * game). The server answers HELLO, then a POSITION and from there on the
+ * room's MOVE, RESIGN, RESULT and NEW_GAME events, numbered per room. A
+ * spectator that falls behind gets a fresh POSITION instead of the backlog.
+ *
+ * Every encoder writes at the buffer's position and every decoder reads at
+ * an absolute offset, so neither allocates.
+ */
+final class Protocol {
+    static final int VERSION = 2;
+
+    static final int HELLO = 0x01;
+    static final int MOVE = 0x02;
+    static final int NAME = 0x03;
+    static final int RESIGN = 0x04;
+    static final int RESULT = 0x05;
+    static final int COLOR = 0x06;
+    static final int PING = 0x07;
+    static final int PONG = 0x08;
+    static final int NEW_GAME = 0x09;
+    static final int CLOCK = 0x0A;
+    static final int WATCH = 0x0B;
+    static final int POSITION = 0x0C;
+
+    static final int LENGTH_BYTES = 2;
+    // Largest frame either side accepts, length prefix included
+    static final int MAX_FRAME = 512;
+    static final int MAX_NAME_BYTES = MAX_FRAME - LENGTH_BYTES - 1;
+    static final int NO_WINNER = 0xFF;
+    // Upper bound for every frame type except NAME
+    static final int FIXED_FRAME_BYTES = 16;
+
+    private Protocol() {
+    }
+
+    static void putHello(ByteBuffer out, long token, int lastSequence) {
+        header(out, 14, HELLO);
+        out.put((byte) VERSION);
+        out.putLong(token);
+        out.putInt(lastSequence);
+    }
+
+    static void putMove(ByteBuffer out, int sequence, int move) {
+        header(out, 7, MOVE);
+        out.putInt(sequence);
+        out.putShort((short) wireMove(move));
+    }
+
+    static void putResign(ByteBuffer out, int sequence, int color) {
+        header(out, 6, RESIGN);
+        out.putInt(sequence);
+        out.put((byte) color);
+    }
+
+    static void putResult(ByteBuffer out, int sequence, Game.Status status, int winner) {
+        header(out, 7, RESULT);
+        out.putInt(sequence);
+        out.put((byte) status.ordinal());
+        out.put((byte) (winner == Game.NO_WINNER ? NO_WINNER : winner));
+    }
+
+    static void putNewGame(ByteBuffer out, int sequence) {
+        header(out, 5, NEW_GAME);
+        out.putInt(sequence);
+    }
+
+    // A game event in the packed form kept by GameLog
+    static void putEvent(ByteBuffer out, int sequence, int type, int data) {
+        switch (type) {
+            case MOVE: putMoveBits(out, sequence, data); break;
+            case RESIGN: putResign(out, sequence, data); break;
+            case RESULT: putResult(out, sequence, GameLog.status(data), GameLog.winner(data)); break;
+            case NEW_GAME: putNewGame(out, sequence); break;
+            default: throw new IllegalArgumentException("Not a game event: " + type);
+        }
+    }
+
+    // MOVE with the move already in wire form
+    private static void putMoveBits(ByteBuffer out, int sequence, int wireMove) {
+        header(out, 7, MOVE);
+        out.putInt(sequence);
+        out.putShort((short) wireMove);
+    }
+
+    static void putClock(ByteBuffer out, long whiteMillis, long blackMillis) {
+        header(out, 9, CLOCK);
+        out.putInt((int) Math.min(whiteMillis, 0xFFFFFFFFL));
+        out.putInt((int) Math.min(blackMillis, 0xFFFFFFFFL));
+    }
+
+    static void putWatch(ByteBuffer out, int game) {
+        header(out, 6, WATCH);
+        out.put((byte) VERSION);
+        out.putInt(game);
+    }
+
+    // FEN is plain ASCII and well under MAX_FRAME
+    static void putPosition(ByteBuffer out, int sequence, String fen) {
+        header(out, 5 + fen.length(), POSITION);
+        out.putInt(sequence);
+        for (int i = 0; i < fen.length(); i++) {
+            out.put((byte) fen.charAt(i));
+        }
+    }
+
+    static void putColor(ByteBuffer out, int color) {
+        header(out, 2, COLOR);
+        out.put((byte) color);
+    }
+
+    static void putPing(ByteBuffer out, long nanos) {
+        header(out, 9, PING);
+        out.putLong(nanos);
+    }
+
+    // Echoes the timestamp of a received PING
+    static void putPong(ByteBuffer out, ByteBuffer ping, int offset) {
+        header(out, 9, PONG);
+        out.putLong(timestamp(ping, offset));
+    }
+
+    // UTF-8 without an intermediate byte[]; names are cut at MAX_NAME_BYTES
+    static void putName(ByteBuffer out, String name) {
+        int start = out.position();
+        out.position(start + LENGTH_BYTES);
+        out.put((byte) NAME);
+        int limit = start + LENGTH_BYTES + 1 + MAX_NAME_BYTES;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+            if (out.position() + bytes > limit) break;
+            if (bytes == 1) {
+                out.put((byte) c);
+            } else if (bytes == 2) {
+                out.put((byte) (0xC0 | c >> 6));
+                out.put((byte) (0x80 | c & 0x3F));
+            } else {
+                // Surrogates are sent as-is, like DataOutputStream.writeUTF did
+                out.put((byte) (0xE0 | c >> 12));
+                out.put((byte) (0x80 | c >> 6 & 0x3F));
+                out.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        out.putShort(start, (short) (out.position() - start - LENGTH_BYTES));
+    }
+
+    private static void header(ByteBuffer out, int length, int type) {
+        out.putShort((short) length);
+        out.put((byte) type);
+    }
+
+    // Decoding: offset is the first byte after the length prefix, i.e. the type
+
+    static int type(ByteBuffer frame, int offset) {
+        return frame.get(offset) & 0xFF;
+    }
+
+    static int version(ByteBuffer frame, int offset) {
+        return frame.get(offset + 1) & 0xFF;
+    }
+
+    static long helloToken(ByteBuffer frame, int offset) {
+        return frame.getLong(offset + 2);
+    }
+
+    static int helloSequence(ByteBuffer frame, int offset) {
+        return frame.getInt(offset + 10);
+    }
+
+    static boolean isGameEvent(int type) {
+        return type == MOVE || type == RESIGN || type == RESULT || type == NEW_GAME;
+    }
+
+    // Sequence number of a game event
+    static int sequence(ByteBuffer frame, int offset) {
+        return frame.getInt(offset + 1);
+    }
+
+    // Event payload in GameLog's packed form: wire move, resigning colour or status and winner
+    static int eventData(ByteBuffer frame, int offset) {
+        switch (type(frame, offset)) {
+            case MOVE: return move(frame, offset);
+            case RESIGN: return resignColor(frame, offset);
+            case RESULT: return GameLog.result(status(frame, offset), winner(frame, offset));
+            default: return 0;
+        }
+    }
+
+    static int move(ByteBuffer frame, int offset) {
+        return frame.getShort(offset + 5) & 0xFFFF;
+    }
+
+    static int resignColor(ByteBuffer frame, int offset) {
+        return frame.get(offset + 5) & 1;
+    }
+
+    static int watchedGame(ByteBuffer frame, int offset) {
+        return frame.getInt(offset + 2);
+    }
+
+    static String fen(ByteBuffer frame, int offset, int length) {
+        byte[] bytes = new byte[length - 5];
+        frame.get(offset + 5, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    static long clockMillis(ByteBuffer frame, int offset, int color) {
+        return frame.getInt(offset + 1 + 4 * color) & 0xFFFFFFFFL;
+    }
+
+    static int color(ByteBuffer frame, int offset) {
+        return frame.get(offset + 1) & 1;
+    }
+
+    static Game.Status status(ByteBuffer frame, int offset) {
+        int ordinal = frame.get(offset + 5) & 0xFF;
+        return ordinal < Game.Status.values().length ? Game.Status.values()[ordinal] : Game.Status.ONGOING;
+    }
+
+    static int winner(ByteBuffer frame, int offset) {
+        int winner = frame.get(offset + 6) & 0xFF;
+        return winner == NO_WINNER ? Game.NO_WINNER : winner;
+    }
+
+    static long timestamp(ByteBuffer frame, int offset) {
+        return frame.getLong(offset + 1);
+    }
+
+    static String name(ByteBuffer frame, int offset, int length) {
+        byte[] bytes = new byte[length - 1];
+        frame.get(offset + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Minimum frame length per type, or -1 for unknown types
+    static int minimumLength(int type) {
+        switch (type) {
+            case HELLO: return 14;
+            case MOVE: return 7;
+            case NAME: return 1;
+            case RESIGN: return 6;
+            case RESULT: return 7;
+            case COLOR: return 2;
+            case PING:
+            case PONG: return 9;
+            case NEW_GAME: return 5;
+            case CLOCK: return 9;
+            case WATCH: return 6;
+            case POSITION: return 6;
+            default: return -1;
+        }
+    }
+
+    static void checkFrame(ByteBuffer frame, int offset, int length) throws IOException {
+        int min = length > 0 ? minimumLength(type(frame, offset)) : -1;
+        if (min < 0 || length < min) throw new IOException("Malformed frame");
+    }
+
+    // Wire moves carry only what the sender chose; flags are recomputed from the position
+
+    static int wireMove(int move) {
+        int promotion = Move.isPromotion(move) ? Move.promotionType(move) - Piece.KNIGHT + 1 : 0;
+        return Move.from(move) | Move.to(move) << 6 | promotion << 12;
+    }
+
+    static int wireFrom(int wireMove) {
+        return wireMove & 63;
+    }
+
+    static int wireTo(int wireMove) {
+        return wireMove >>> 6 & 63;
+    }
+
+    // Promotion piece type, or Piece.NONE
+    static int wirePromotion(int wireMove) {
+        int promotion = wireMove >>> 12 & 7;
+        return promotion == 0 || promotion > 4 ? Piece.NONE : promotion - 1 + Piece.KNIGHT;
+    }
+
+    // The legal move a wire move stands for in the game, or Move.NONE
+    static int resolve(Game game, int wireMove) {
+        int promotion = wirePromotion(wireMove);
+        return game.findMove(wireFrom(wireMove), wireTo(wireMove),
+                promotion == Piece.NONE ? Piece.QUEEN : promotion);
+    }
+
+    // The same for a bare position, e.g. a spectator's board
+    static int resolve(Position position, int wireMove, int[] scratch) {
+        int promotion = wirePromotion(wireMove);
+        int count = MoveGenerator.generateLegal(position, scratch);
+        for (int i = 0; i < count; i++) {
+            int move = scratch[i];
+            if (Move.from(move) == wireFrom(wireMove) && Move.to(move) == wireTo(wireMove)
+                    && (!Move.isPromotion(move) || Move.promotionType(move) == (promotion == Piece.NONE ? Piece.QUEEN : promotion))) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * {@link NnueKernels} in plain loops, for JVMs started without the
+ * jdk.incubator.vector module.
+ */
+final class ScalarKernels implements NnueKernels {
+    @Override
+    public void add(short[] accumulator, short[] weights, int offset) {
+        for (int i = 0; i < accumulator.length; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    @Override
+    public void subtract(short[] accumulator, short[] weights, int offset) {
+        for (int i = 0; i < accumulator.length; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    @Override
+    public void activate(short[] accumulator, float[] out, int offset) {
+        for (int i = 0; i < accumulator.length; i++) {
+            out[offset + i] = Math.max(0, Math.min(accumulator[i], ACTIVATION_MAX)) * (1f / ACTIVATION_MAX);
+        }
+    }
+
+    @Override
+    public void dense(float[] in, float[] weights, float[] bias, float[] out) {
+        for (int j = 0; j < out.length; j++) {
+            float sum = bias[j];
+            int row = j * in.length;
+            for (int i = 0; i < in.length; i++) {
+                sum += weights[row + i] * in[i];
+            }
+            out[j] = sum;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
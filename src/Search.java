@@ -0,0 +1,455 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Iterative-deepening alpha-beta search with principal variation search,
+ * check extensions and a captures-only quiescence search. Moves are tried
+ * in the order: transposition table move, captures by MVV-LVA, the two
+ * killer moves of the ply, then quiet moves by history score.
+ *
+ * The search plays moves on the position it is given and leaves it as it
+ * found it. Between iterations it stops once the soft time limit is used
+ * up; inside an iteration it checks the hard limit and {@link #stop} every
+ * few thousand nodes. One instance searches on one thread at a time.
+ */
+public final class Search {
+    public static final int INFINITE = 32_000;
+    public static final int MATE = 31_000;
+    public static final int MAX_PLY = 64;
+    // Scores beyond this are mates, stored in the table relative to the node; tablebase mates reach past MAX_PLY
+    private static final int MATE_BOUND = MATE - 4 * MAX_PLY;
+    private static final int CHECK_INTERVAL = 2048;
+
+    private static final int TT_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 20;
+    private static final int KILLER_SCORE = 1 << 19;
+    private static final int HISTORY_LIMIT = 1 << 18;
+
+    public interface Listener {
+        void onIteration(Result result);
+    }
+
+    /** How long to search: a depth, a fixed time, or a share of a clock. */
+    public static final class Limits {
+        int depth = MAX_PLY - 1;
+        long moveTimeMillis;
+        long remainingMillis;
+        long incrementMillis;
+        int movesToGo;
+        boolean infinite;
+
+        public static Limits depth(int depth) {
+            Limits limits = new Limits();
+            limits.depth = Math.max(1, Math.min(depth, MAX_PLY - 1));
+            return limits;
+        }
+
+        public static Limits moveTime(long millis) {
+            Limits limits = new Limits();
+            limits.moveTimeMillis = Math.max(1, millis);
+            return limits;
+        }
+
+        // Time left on the mover's clock; movesToGo 0 for sudden death
+        public static Limits clock(long remainingMillis, long incrementMillis, int movesToGo) {
+            Limits limits = new Limits();
+            limits.remainingMillis = Math.max(1, remainingMillis);
+            limits.incrementMillis = incrementMillis;
+            limits.movesToGo = movesToGo;
+            return limits;
+        }
+
+        // Until stop() is called
+        public static Limits infinite() {
+            Limits limits = new Limits();
+            limits.infinite = true;
+            return limits;
+        }
+
+        public Limits withDepth(int depth) {
+            this.depth = Math.max(1, Math.min(depth, MAX_PLY - 1));
+            return this;
+        }
+
+        // Time after which no new iteration is started, and after which the search is cut off
+        long softMillis() {
+            if (infinite) return Long.MAX_VALUE;
+            if (moveTimeMillis > 0) return moveTimeMillis;
+            if (remainingMillis == 0) return Long.MAX_VALUE;
+            return allotMillis() / 2;
+        }
+
+        long hardMillis() {
+            if (infinite) return Long.MAX_VALUE;
+            if (moveTimeMillis > 0) return moveTimeMillis;
+            if (remainingMillis == 0) return Long.MAX_VALUE;
+            // Never more than a third of what is left, keeping a little for transmission
+            return Math.max(1, Math.min(allotMillis() * 3, remainingMillis / 3 - 20));
+        }
+
+        private long allotMillis() {
+            int moves = movesToGo > 0 ? Math.min(movesToGo, 40) : 30;
+            return Math.max(1, remainingMillis / moves + incrementMillis * 3 / 4);
+        }
+    }
+
+    /** The outcome of one completed (or cut-off) iteration. */
+    public static final class Result {
+        public final int depth;
+        public final int score;
+        public final long nodes;
+        public final long nanos;
+        private final int[] pv;
+
+        Result(int depth, int score, long nodes, long nanos, int[] pv) {
+            this.depth = depth;
+            this.score = score;
+            this.nodes = nodes;
+            this.nanos = nanos;
+            this.pv = pv;
+        }
+
+        public int bestMove() {
+            return pv.length == 0 ? Move.NONE : pv[0];
+        }
+
+        public int[] pv() {
+            return pv.clone();
+        }
+
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+
+        public boolean isMate() {
+            return Math.abs(score) >= MATE_BOUND;
+        }
+
+        // Moves to mate, negative when being mated
+        public int mateIn() {
+            return score > 0 ? (MATE - score + 1) / 2 : -(MATE + score) / 2;
+        }
+
+        // The same result with the node count of every thread that worked on it
+        Result withNodes(long totalNodes) {
+            return new Result(depth, score, totalNodes, nanos, pv);
+        }
+
+        public String pvString() {
+            StringBuilder sb = new StringBuilder();
+            for (int move : pv) {
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(Move.toUci(move));
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "depth " + depth + " score " + (isMate() ? "mate " + mateIn() : "cp " + score)
+                    + " nodes " + nodes + " nps " + nodesPerSecond() + " pv " + pvString();
+        }
+    }
+
+    private final TranspositionTable table;
+    private final Tablebase tablebase = Tablebase.configured();
+    private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] scores = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[12][64];
+    private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+
+    // Tickets issued to searches, and the last one a stop() has ended
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong stoppedThrough = new AtomicLong();
+    private long ticket;
+    private boolean stopped;
+    private long nodes;
+    private long startNanos;
+    private long hardDeadline;
+    // Best score at the root so far in the current iteration
+    private int rootScore;
+
+    public Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    // Ends the running search, and any queued under an earlier ticket, as soon as it next checks; from any thread
+    public void stop() {
+        stoppedThrough.accumulateAndGet(issued.get(), Math::max);
+    }
+
+    // Taken when a search is queued, so that a stop() which comes before it starts still ends it
+    public long ticket() {
+        return issued.incrementAndGet();
+    }
+
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * Searches until the limits say stop and returns the deepest result;
+     * the listener, if any, hears about every iteration. Null only if the
+     * position has no legal moves.
+     */
+    public Result search(Position position, Limits limits, Listener listener) {
+        return search(position, limits, listener, ticket());
+    }
+
+    // Under a ticket taken earlier, when the search was queued
+    public Result search(Position position, Limits limits, Listener listener, long ticket) {
+        table.newSearch();
+        return search(position, limits, listener, ticket, 0);
+    }
+
+    /**
+     * The search of one thread of a {@link SmpSearch}; the caller starts
+     * the table's new search. Helpers start one ply deeper on alternate threads
+     * so they spread over the tree instead of repeating the main thread.
+     */
+    Result search(Position position, Limits limits, Listener listener, long ticket, int helper) {
+        this.ticket = ticket;
+        stopped = ticket <= stoppedThrough.get();
+        nodes = 0;
+        startNanos = System.nanoTime();
+        long hard = limits.hardMillis();
+        long soft = Math.min(limits.softMillis(), hard);
+        hardDeadline = hard == Long.MAX_VALUE ? Long.MAX_VALUE : startNanos + hard * 1_000_000L;
+        long softDeadline = soft == Long.MAX_VALUE ? Long.MAX_VALUE : startNanos + soft * 1_000_000L;
+        for (int[] k : killers) k[0] = k[1] = Move.NONE;
+        for (int[] h : history) {
+            for (int i = 0; i < 64; i++) h[i] /= 8;
+        }
+
+        // With the root's endgame in a table every move is scored exactly at depth 1
+        boolean solved = tablebase.probe(position) != Tablebase.UNKNOWN;
+        Result best = null;
+        for (int depth = 1 + (helper & 1); depth <= limits.depth; depth++) {
+            int score = alphaBeta(position, depth, -INFINITE, INFINITE, 0);
+            // A cut-off iteration still counts if it finished its first root move, the previous best
+            if (pvLength[0] == 0) break;
+            if (stopped) score = rootScore;
+            best = new Result(depth, score, nodes, System.nanoTime() - startNanos, java.util.Arrays.copyOf(pv[0], pvLength[0]));
+            if (stopped) break;
+            if (listener != null) listener.onIteration(best);
+            if (solved || best.isMate() && depth > 2 * Math.abs(best.mateIn()) || System.nanoTime() >= softDeadline) break;
+        }
+        if (best == null) {
+            // Not even one move searched: any legal move beats none
+            int count = MoveGenerator.generateLegal(position, moves[0]);
+            if (count == 0) return null;
+            best = new Result(0, 0, nodes, System.nanoTime() - startNanos, new int[]{moves[0][0]});
+        }
+        return best;
+    }
+
+    private int alphaBeta(Position pos, int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if (ply > 0) {
+            if (pos.isFiftyMoveDraw() || pos.repetitionCount() > 0) return 0;
+            int known = tablebase.probe(pos);
+            if (known != Tablebase.UNKNOWN) return tablebaseScore(known, ply);
+            // Mate distance pruning: no line from here beats a mate already found nearer the root
+            alpha = Math.max(alpha, -MATE + ply);
+            beta = Math.min(beta, MATE - ply - 1);
+            if (alpha >= beta) return alpha;
+        }
+        boolean inCheck = pos.isInCheck(pos.sideToMove());
+        if (inCheck) depth++;
+        if (depth <= 0) return quiescence(pos, alpha, beta, ply);
+        if (ply >= MAX_PLY - 1) return Evaluation.evaluate(pos);
+        if (++nodes % CHECK_INTERVAL == 0) checkTime();
+        if (stopped) return 0;
+
+        boolean pvNode = beta - alpha > 1;
+        long key = pos.key();
+        long entry = table.probe(key);
+        int ttMove = Move.NONE;
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (!pvNode && ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || bound == TranspositionTable.BOUND_LOWER && score >= beta
+                        || bound == TranspositionTable.BOUND_UPPER && score <= alpha) {
+                    return score;
+                }
+            }
+        }
+
+        int[] list = moves[ply];
+        int count = MoveGenerator.generateLegal(pos, list);
+        if (count == 0) return inCheck ? -MATE + ply : 0;
+        scoreMoves(pos, list, scores[ply], count, ttMove, ply);
+
+        int originalAlpha = alpha;
+        int best = -INFINITE;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(list, scores[ply], i, count);
+            int piece = pos.pieceAt(Move.from(move));
+            pos.makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -alphaBeta(pos, depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                // Null window first: later moves are expected to fail low
+                score = -alphaBeta(pos, depth - 1, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && score < beta) score = -alphaBeta(pos, depth - 1, -beta, -alpha, ply + 1);
+            }
+            pos.unmakeMove(move);
+            if (stopped) return 0;
+
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (ply == 0) rootScore = score;
+                    if (alpha >= beta) {
+                        if (!Move.isCapture(move) && !Move.isPromotion(move)) rememberQuiet(move, piece, depth, ply);
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.BOUND_LOWER
+                : best > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+        table.store(key, bestMove, toTable(best, ply), 0, depth, bound);
+        return best;
+    }
+
+    private int quiescence(Position pos, int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if (++nodes % CHECK_INTERVAL == 0) checkTime();
+        if (stopped) return 0;
+        int known = tablebase.probe(pos);
+        if (known != Tablebase.UNKNOWN) return tablebaseScore(known, ply);
+        boolean inCheck = pos.isInCheck(pos.sideToMove());
+        int best = -INFINITE;
+        if (!inCheck) {
+            // Standing pat: the side to move need not capture
+            best = Evaluation.evaluate(pos);
+            if (best >= beta || ply >= MAX_PLY - 1) return best;
+            if (best > alpha) alpha = best;
+        } else if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(pos);
+        }
+
+        int[] list = moves[ply];
+        int count = MoveGenerator.generateLegal(pos, list);
+        if (count == 0) return inCheck ? -MATE + ply : best;
+        if (!inCheck) {
+            // Out of check only captures and promotions are worth resolving
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (Move.isCapture(list[i]) || Move.isPromotion(list[i])) list[kept++] = list[i];
+            }
+            count = kept;
+        }
+        scoreMoves(pos, list, scores[ply], count, Move.NONE, ply);
+
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(list, scores[ply], i, count);
+            pos.makeMove(move);
+            int score = -quiescence(pos, -beta, -alpha, ply + 1);
+            pos.unmakeMove(move);
+            if (stopped) return 0;
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) break;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void checkTime() {
+        if (System.nanoTime() >= hardDeadline || ticket <= stoppedThrough.get()) stopped = true;
+    }
+
+    private void scoreMoves(Position pos, int[] list, int[] values, int count, int ttMove, int ply) {
+        int killer0 = killers[ply][0], killer1 = killers[ply][1];
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int value;
+            if (move == ttMove) {
+                value = TT_MOVE_SCORE;
+            } else if (Move.isCapture(move) || Move.isPromotion(move)) {
+                // Most valuable victim first, then least valuable attacker
+                int victim = Move.isEnPassant(move) ? Piece.PAWN
+                        : Move.isCapture(move) ? Piece.type(pos.pieceAt(Move.to(move))) : Piece.PAWN - 1;
+                int attacker = Piece.type(pos.pieceAt(Move.from(move)));
+                value = CAPTURE_SCORE + (victim + 1) * 16 - attacker;
+                if (Move.isPromotion(move)) value += Move.promotionType(move) * 16;
+            } else if (move == killer0) {
+                value = KILLER_SCORE + 1;
+            } else if (move == killer1) {
+                value = KILLER_SCORE;
+            } else {
+                value = history[pos.pieceAt(Move.from(move))][Move.to(move)];
+            }
+            values[i] = value;
+        }
+    }
+
+    // Selection sort step: moves the best remaining move to index i and returns it
+    private static int pickNext(int[] list, int[] values, int i, int count) {
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (values[j] > values[best]) best = j;
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int value = values[best];
+        values[best] = values[i];
+        values[i] = value;
+        return move;
+    }
+
+    private void rememberQuiet(int move, int piece, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] counts = history[piece];
+        counts[Move.to(move)] += depth * depth;
+        if (counts[Move.to(move)] > HISTORY_LIMIT) {
+            for (int[] h : history) {
+                for (int i = 0; i < 64; i++) h[i] /= 2;
+            }
+        }
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][0] = move;
+        int length = ply + 1 < MAX_PLY ? pvLength[ply + 1] : 0;
+        System.arraycopy(pv[ply + 1 < MAX_PLY ? ply + 1 : ply], 0, pv[ply], 1, Math.min(length, MAX_PLY - 1));
+        pvLength[ply] = Math.min(length + 1, MAX_PLY);
+    }
+
+    private static int tablebaseScore(int value, int ply) {
+        if (value == Tablebase.DRAW) return 0;
+        int mate = MATE - ply - Tablebase.plies(value);
+        return Tablebase.isWin(value) ? mate : -mate;
+    }
+
+    private static int toTable(int score, int ply) {
+        if (score >= MATE_BOUND) return score + ply;
+        if (score <= -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE_BOUND) return score - ply;
+        if (score <= -MATE_BOUND) return score + ply;
+        return score;
+    }
+}
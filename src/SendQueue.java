@@ -0,0 +1,158 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbound frames of one {@link NetworkConnection}. Senders encode straight
+ * into the pending buffer and get a future back; a single writer thread swaps
+ * buffers and writes everything queued so far with one write and one flush,
+ * so a burst of frames leaves as one segment.
+ *
+ * The pending buffer is bounded. When it is full a sender either waits for
+ * the writer (BLOCK) or the connection is dropped (DISCONNECT). A lock with
+ * conditions rather than a monitor keeps waiting virtual threads unpinned.
+ *
+ * Usage from a sender:
+ * <pre>
+ * ByteBuffer out = queue.begin(maxBytes);   // null if refused
+ * Protocol.putMove(out, sequence, move);
+ * return queue.commit();
+ * </pre>
+ */
+final class SendQueue {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final NetworkConnection.OverflowPolicy policy;
+    private final Closeable connection;
+
+    private ByteBuffer pending;
+    private ByteBuffer writing;
+    private List<CompletableFuture<Void>> pendingFutures = new ArrayList<>();
+    private List<CompletableFuture<Void>> writingFutures = new ArrayList<>();
+    private volatile IOException closedBy;
+
+    SendQueue(int capacityBytes, NetworkConnection.OverflowPolicy policy, Closeable connection) {
+        this.pending = ByteBuffer.allocate(capacityBytes);
+        this.writing = ByteBuffer.allocate(capacityBytes);
+        this.policy = policy;
+        this.connection = connection;
+    }
+
+    // Locks the queue and returns the buffer to encode into, or null (unlocked) if refused
+    ByteBuffer begin(int maxBytes) {
+        lock.lock();
+        boolean full = false;
+        while (closedBy == null && pending.remaining() < maxBytes) {
+            if (policy == NetworkConnection.OverflowPolicy.DISCONNECT || maxBytes > pending.capacity()) {
+                full = true;
+                break;
+            }
+            notFull.awaitUninterruptibly();
+        }
+        if (full || closedBy != null) {
+            lock.unlock();
+            if (full) close(new IOException("Send queue full"));
+            return null;
+        }
+        return pending;
+    }
+
+    // Like begin, but never waits or disconnects; for frames that can simply be skipped
+    ByteBuffer tryBegin(int maxBytes) {
+        lock.lock();
+        if (closedBy != null || pending.remaining() < maxBytes) {
+            lock.unlock();
+            return null;
+        }
+        return pending;
+    }
+
+    // Finishes the frame started by begin and unlocks
+    CompletableFuture<Void> commit() {
+        try {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            pendingFutures.add(done);
+            notEmpty.signal();
+            return done;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The answer for a sender whose begin returned null
+    CompletableFuture<Void> refused() {
+        IOException cause = closedBy;
+        return CompletableFuture.failedFuture(cause != null ? cause : new IOException("Not connected"));
+    }
+
+    // Why the queue was closed, or null while open
+    IOException closeReason() {
+        return closedBy;
+    }
+
+    // Runs on the connection's writer thread until the queue is closed
+    void writeLoop(OutputStream out) {
+        try {
+            while (true) {
+                lock.lock();
+                try {
+                    while (closedBy == null && pending.position() == 0) {
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    if (closedBy != null) return;
+                    ByteBuffer buffer = writing;
+                    writing = pending;
+                    pending = buffer;
+                    List<CompletableFuture<Void>> futures = writingFutures;
+                    writingFutures = pendingFutures;
+                    pendingFutures = futures;
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                out.write(writing.array(), 0, writing.position());
+                out.flush();
+                for (CompletableFuture<Void> done : writingFutures) {
+                    done.complete(null);
+                }
+                writing.clear();
+                writingFutures.clear();
+            }
+        } catch (IOException e) {
+            for (CompletableFuture<Void> done : writingFutures) {
+                done.completeExceptionally(e);
+            }
+            writingFutures.clear();
+            close(e);
+        }
+    }
+
+    // Fails everything still queued and drops the connection; later sends are refused
+    void close(IOException cause) {
+        lock.lock();
+        try {
+            if (closedBy != null) return;
+            closedBy = cause;
+            for (CompletableFuture<Void> done : pendingFutures) {
+                done.completeExceptionally(cause);
+            }
+            pendingFutures.clear();
+            pending.clear();
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -1,14 +1,97 @@
+import java.io.IOException;
 import java.net.*;
+import java.util.concurrent.TimeUnit;
 
 public class Server extends NetworkConnection {
-    public Server(java.util.function.Consumer<String> callback) {
+    public static final int PORT = 55555;
+    // How long a resuming peer waits for the connection it replaces to wind down
+    private static final long TAKEOVER_MILLIS = 5000;
+
+    private ServerSocket serverSocket;
+    private final Object slot = new Object();
+    // The opponent's socket, or null; guarded by slot
+    private Socket peer;
+
+    public Server(FrameHandler callback) {
         super(callback);
     }
 
+    public Server(FrameHandler callback, ThreadMode threadMode) {
+        super(callback, threadMode);
+    }
+
     @Override
     protected Socket createSocket() throws Exception {
-        ServerSocket serverSocket = new ServerSocket(55555);
-        System.out.println("Waiting for client...");
+        if (serverSocket == null) {
+            serverSocket = new ServerSocket(PORT);
+            System.out.println("Waiting for client...");
+        }
         return serverSocket.accept();
     }
-}
\ No newline at end of file
+
+    @Override
+    protected boolean isAccepting() {
+        return true;
+    }
+
+    // Keeps accepting; each socket gets its own thread. The first one becomes the
+    // opponent, and once it leaves the next connection takes its place. A peer
+    // resuming the session takes the place at once: its old connection is most
+    // likely dead without the heartbeat having noticed yet.
+    @Override
+    protected void connect() {
+        try {
+            while (true) {
+                Socket socket = createSocket();
+                startThread("peer " + socket.getRemoteSocketAddress(), () -> handle(socket));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    void handle(Socket socket) {
+        try (socket) {
+            serve(socket);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (slot) {
+                if (peer == socket) {
+                    peer = null;
+                    slot.notifyAll();
+                }
+            }
+        }
+    }
+
+    @Override
+    protected boolean admit(Socket socket, boolean resuming) {
+        synchronized (slot) {
+            if (peer != null && resuming) {
+                System.out.println("Resuming from " + socket.getRemoteSocketAddress() + ", closing "
+                        + peer.getRemoteSocketAddress());
+                try {
+                    peer.close();
+                } catch (IOException e) {
+                    // Its read loop fails either way
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TAKEOVER_MILLIS);
+                try {
+                    for (long left = TAKEOVER_MILLIS; peer != null && left > 0;
+                         left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) {
+                        slot.wait(left);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (peer != null) {
+                System.out.println("Rejecting " + socket.getRemoteSocketAddress() + ": game in progress");
+                return false;
+            }
+            peer = socket;
+            return true;
+        }
+    }
+}
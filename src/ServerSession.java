@@ -0,0 +1,308 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One client connection of the {@link GameServer}, speaking the binary
+ * {@link Protocol}. Once the client's HELLO has been checked the session
+ * either resumes its seat in a game, if it offered a live session token,
+ * or gets a new token and joins the lobby. A spectator opens with WATCH
+ * instead and from then on only reads its room's {@link Broadcast}.
+ *
+ * Players are pinged every heartbeat, and the echoes give a smoothed
+ * round-trip time the room credits back to the mover's clock, as the
+ * clients do.
+ *
+ * Inbound and outbound data live in per-session direct buffers. Relaying a
+ * frame copies it from the sender's inbound buffer straight into the
+ * receiver's outbound buffer; a receiver that lets its outbound buffer fill
+ * up is disconnected instead of stalling its event loop.
+ */
+final class ServerSession {
+    private static final int IN_CAPACITY = 4096;
+    private static final int OUT_CAPACITY = 16 * 1024;
+
+    final SocketChannel channel;
+    final GameServer.EventLoop loop;
+    private final Lobby lobby;
+    SelectionKey key;
+
+    private final ByteBuffer in = ByteBuffer.allocateDirect(IN_CAPACITY);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(OUT_CAPACITY);
+    private volatile boolean closed;
+    private boolean greeted;
+    // Read by the owning loop's idle sweep; for spectators, also the last time they caught up
+    long lastReadNanos = System.nanoTime();
+    // Smoothed like NetworkConnection's: each sample moves it an eighth of the way; 0 until measured
+    private volatile long smoothedRttNanos;
+
+    // Owned by the Lobby / GameRoom, guarded by the room
+    GameRoom room;
+    int color;
+    byte[] nameFrame;
+    long token;
+    // Game events sent to this player, and the last one received from it
+    GameLog sent = new GameLog();
+    int received;
+
+    // Spectators only; owned by the session's loop
+    private Broadcast watching;
+    private Broadcast.Reader feed;
+
+    ServerSession(SocketChannel channel, GameServer.EventLoop loop, Lobby lobby) {
+        this.channel = channel;
+        this.loop = loop;
+        this.lobby = lobby;
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    // Smoothed round-trip time, or 0 before the first echo
+    long rttMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(smoothedRttNanos);
+    }
+
+    long oneWayLatencyMillis() {
+        return rttMillis() / 2;
+    }
+
+    private void recordRtt(long sampleNanos) {
+        if (sampleNanos < 0) return;
+        long rtt = smoothedRttNanos;
+        smoothedRttNanos = rtt == 0 ? sampleNanos : rtt + (sampleNanos - rtt) / 8;
+    }
+
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(in);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            close();
+            return;
+        }
+        lastReadNanos = System.nanoTime();
+        in.flip();
+        while (in.remaining() >= 2) {
+            int start = in.position();
+            int length = in.getShort(start) & 0xFFFF;
+            if (length + 2 > Protocol.MAX_FRAME) {
+                close();
+                return;
+            }
+            if (in.remaining() < length + 2) break;
+            try {
+                Protocol.checkFrame(in, start + 2, length);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            onFrame(in, start + 2, length);
+            if (closed) return;
+            in.position(start + 2 + length);
+        }
+        in.compact();
+    }
+
+    private void onFrame(ByteBuffer buffer, int offset, int length) {
+        if (!greeted && Protocol.type(buffer, offset) == Protocol.WATCH) {
+            greeted = true;
+            GameRoom watched = lobby.room(Protocol.watchedGame(buffer, offset));
+            if (Protocol.version(buffer, offset) != Protocol.VERSION || watched == null) {
+                System.err.println("Disconnecting " + describe() + ": no such game to watch");
+                close();
+                return;
+            }
+            sendHello(0, 0);
+            if (!watched.watch(this)) close();
+            return;
+        }
+        if (!greeted) {
+            if (Protocol.type(buffer, offset) != Protocol.HELLO
+                    || Protocol.version(buffer, offset) != Protocol.VERSION) {
+                System.err.println("Disconnecting " + describe() + ": unsupported protocol");
+                close();
+                return;
+            }
+            greeted = true;
+            long offered = Protocol.helloToken(buffer, offset);
+            if (offered != 0 && lobby.resume(this, offered, Protocol.helloSequence(buffer, offset))) return;
+            token = NetworkConnection.newToken();
+            sendHello(token, 0);
+            lobby.join(this);
+            return;
+        }
+        int type = Protocol.type(buffer, offset);
+        if (type == Protocol.PING) {
+            sendPong(buffer, offset);
+            return;
+        } else if (type == Protocol.PONG) {
+            recordRtt(System.nanoTime() - Protocol.timestamp(buffer, offset));
+            return;
+        }
+        GameRoom current = room;
+        if (current != null) {
+            current.onFrame(this, buffer, offset, length);
+        } else if (type == Protocol.NAME) {
+            // Remember the name so the opponent receives it once paired
+            byte[] frame = new byte[length + 2];
+            buffer.get(offset - 2, frame);
+            nameFrame = frame;
+        }
+    }
+
+    // Queues one frame (type and payload, without the length) from any thread
+    void send(ByteBuffer payload, int offset, int length) {
+        synchronized (out) {
+            if (!reserve(length + 2)) return;
+            out.putShort((short) length);
+            out.put(out.position(), payload, offset, length);
+            out.position(out.position() + length);
+        }
+        requestFlush();
+    }
+
+    // Queues a complete, already length-prefixed frame
+    void sendFrame(byte[] frame) {
+        synchronized (out) {
+            if (!reserve(frame.length)) return;
+            out.put(frame);
+        }
+        requestFlush();
+    }
+
+    void sendHello(long token, int lastSequence) {
+        synchronized (out) {
+            if (!reserve(Protocol.FIXED_FRAME_BYTES)) return;
+            Protocol.putHello(out, token, lastSequence);
+        }
+        requestFlush();
+    }
+
+    void sendColor(int color) {
+        synchronized (out) {
+            if (!reserve(4)) return;
+            Protocol.putColor(out, color);
+        }
+        requestFlush();
+    }
+
+    // From the owning loop's sweep; spectators only read, so they aren't pinged
+    void ping() {
+        if (!greeted || feed != null) return;
+        synchronized (out) {
+            if (!reserve(Protocol.FIXED_FRAME_BYTES)) return;
+            Protocol.putPing(out, System.nanoTime());
+        }
+        requestFlush();
+    }
+
+    void sendPong(ByteBuffer ping, int offset) {
+        synchronized (out) {
+            if (!reserve(Protocol.FIXED_FRAME_BYTES)) return;
+            Protocol.putPong(out, ping, offset);
+        }
+        requestFlush();
+    }
+
+    void sendEvent(int sequence, int type, int data) {
+        synchronized (out) {
+            if (!reserve(Protocol.FIXED_FRAME_BYTES)) return;
+            Protocol.putEvent(out, sequence, type, data);
+        }
+        requestFlush();
+    }
+
+    void sendClock(long whiteMillis, long blackMillis) {
+        synchronized (out) {
+            if (!reserve(Protocol.FIXED_FRAME_BYTES)) return;
+            Protocol.putClock(out, whiteMillis, blackMillis);
+        }
+        requestFlush();
+    }
+
+    // Caller holds the out lock
+    private boolean reserve(int bytes) {
+        if (closed) return false;
+        if (out.remaining() < bytes) {
+            overflow();
+            return false;
+        }
+        return true;
+    }
+
+    // Called by the room on this session's loop
+    void watch(Broadcast broadcast) {
+        watching = broadcast;
+        feed = broadcast.reader();
+        broadcast.subscribe(this);
+        requestFlush();
+    }
+
+    private void requestFlush() {
+        if (loop.inLoop()) {
+            flush();
+        } else {
+            loop.execute(this::flush);
+        }
+    }
+
+    // Runs on the owning loop only
+    void flush() {
+        if (closed) return;
+        try {
+            boolean drained;
+            synchronized (out) {
+                out.flip();
+                channel.write(out);
+                out.compact();
+                // Spectator frames go out only between whole frames of our own
+                drained = out.position() == 0 && (feed == null || feed.write(channel));
+                key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+            if (drained && feed != null) {
+                lastReadNanos = System.nanoTime();
+                if (watching.isClosed()) close();
+            }
+        } catch (IOException | CancelledKeyException e) {
+            close();
+        }
+    }
+
+    // True while the socket is full and the loop waits for it to accept more
+    boolean awaitingWritable() {
+        return key != null && key.isValid() && (key.interestOps() & SelectionKey.OP_WRITE) != 0;
+    }
+
+    private void overflow() {
+        System.err.println("Disconnecting slow client " + describe());
+        loop.execute(this::close);
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        GameRoom current = room;
+        if (current != null) current.onDisconnect(this);
+        if (watching != null) watching.unsubscribe(this);
+    }
+
+    String describe() {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "?";
+        }
+    }
+}
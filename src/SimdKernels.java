@@ -0,0 +1,87 @@
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link NnueKernels} on the incubating Vector API, at the platform's
+ * preferred float width. Shorts are converted to floats lane for lane, so
+ * the short species has as many lanes as the float one. Lanes left over
+ * at the end of an array are done one at a time.
+ *
+ * Needs --add-modules jdk.incubator.vector at compile and run time; this
+ * is the only class that refers to the module.
+ */
+final class SimdKernels implements NnueKernels {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> SHORTS =
+            VectorSpecies.of(short.class, VectorShape.forBitSize(FLOATS.length() * Short.SIZE));
+    private static final VectorSpecies<Short> WIDE_SHORTS = ShortVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(short[] accumulator, short[] weights, int offset) {
+        int i = 0;
+        for (int bound = WIDE_SHORTS.loopBound(accumulator.length); i < bound; i += WIDE_SHORTS.length()) {
+            ShortVector.fromArray(WIDE_SHORTS, accumulator, i)
+                    .add(ShortVector.fromArray(WIDE_SHORTS, weights, offset + i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < accumulator.length; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    @Override
+    public void subtract(short[] accumulator, short[] weights, int offset) {
+        int i = 0;
+        for (int bound = WIDE_SHORTS.loopBound(accumulator.length); i < bound; i += WIDE_SHORTS.length()) {
+            ShortVector.fromArray(WIDE_SHORTS, accumulator, i)
+                    .sub(ShortVector.fromArray(WIDE_SHORTS, weights, offset + i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < accumulator.length; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    @Override
+    public void activate(short[] accumulator, float[] out, int offset) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(accumulator.length); i < bound; i += SHORTS.length()) {
+            ShortVector clipped = ShortVector.fromArray(SHORTS, accumulator, i)
+                    .max((short) 0)
+                    .min(ACTIVATION_MAX);
+            ((FloatVector) clipped.convertShape(VectorOperators.S2F, FLOATS, 0))
+                    .mul(1f / ACTIVATION_MAX)
+                    .intoArray(out, offset + i);
+        }
+        for (; i < accumulator.length; i++) {
+            out[offset + i] = Math.max(0, Math.min(accumulator[i], ACTIVATION_MAX)) * (1f / ACTIVATION_MAX);
+        }
+    }
+
+    @Override
+    public void dense(float[] in, float[] weights, float[] bias, float[] out) {
+        int bound = FLOATS.loopBound(in.length);
+        for (int j = 0; j < out.length; j++) {
+            int row = j * in.length;
+            FloatVector sum = FloatVector.zero(FLOATS);
+            int i = 0;
+            for (; i < bound; i += FLOATS.length()) {
+                sum = FloatVector.fromArray(FLOATS, weights, row + i)
+                        .fma(FloatVector.fromArray(FLOATS, in, i), sum);
+            }
+            float total = bias[j] + sum.reduceLanes(VectorOperators.ADD);
+            for (; i < in.length; i++) {
+                total += weights[row + i] * in[i];
+            }
+            out[j] = total;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "Vector API, " + FLOATS.length() + " floats";
+    }
+}
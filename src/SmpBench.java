@@ -0,0 +1,45 @@
+/**
+ * Time-to-depth of the Lazy SMP search for 1, 2, 4 ... threads on the
+ * {@link Bench} positions, each searched from an empty table. Speedup is
+ * against the single-threaded time; node counts show how much of the
+ * extra work the threads duplicate.
+ *
+ * Usage: java SmpBench [depth] [maxThreads] [hashMegabytes]
+ */
+public final class SmpBench {
+    private SmpBench() {
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int hash = args.length > 2 ? Integer.parseInt(args[2]) : SmpSearch.DEFAULT_HASH_MEGABYTES;
+        Position[] positions = Bench.load(Bench.POSITIONS);
+
+        // Warm up the JIT on a shallow pass
+        SmpSearch warmup = new SmpSearch(1, hash);
+        for (Position pos : positions) {
+            warmup.search(pos, Search.Limits.depth(Math.min(depth, 5)), null);
+        }
+
+        System.out.printf("depth %d, %d MB hash, %d positions%n", depth, hash, positions.length);
+        System.out.printf("%8s %12s %14s %12s %9s%n", "threads", "time (ms)", "nodes", "knps", "speedup");
+        double baseline = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            SmpSearch search = new SmpSearch(threads, hash);
+            long nanos = 0, nodes = 0;
+            for (Position pos : positions) {
+                search.table().clear();
+                long start = System.nanoTime();
+                Search.Result result = search.search(pos, Search.Limits.depth(depth), null);
+                nanos += System.nanoTime() - start;
+                nodes += result.nodes;
+            }
+            search.setThreads(1);
+            double millis = nanos / 1e6;
+            if (threads == 1) baseline = millis;
+            System.out.printf("%8d %12.0f %,14d %,12d %8.2fx%n", threads, millis, nodes, nodes * 1_000_000L / nanos, baseline / millis);
+            if (threads == maxThreads) break;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lazy SMP: several threads run the same iterative-deepening {@link Search}
+ * on their own copy of the root position and share one lock-free
+ * {@link TranspositionTable}. Nothing else is shared. Each thread finds
+ * the others' results in the table, so together they reach a given depth
+ * sooner than one thread. The first thread keeps time and reports. The
+ * helpers search without limits and are stopped when it returns.
+ *
+ * Defaults come from -Dchess.engine.threads and -Dchess.engine.hash
+ * (megabytes).
+ */
+public final class SmpSearch {
+    public static final int DEFAULT_HASH_MEGABYTES = 64;
+
+    private final TranspositionTable table;
+    private Search[] searches;
+    private ExecutorService helpers;
+
+    public SmpSearch(int threads, int hashMegabytes) {
+        table = new TranspositionTable(hashMegabytes);
+        setThreads(threads);
+    }
+
+    public static SmpSearch configured() {
+        return new SmpSearch(Integer.getInteger("chess.engine.threads", 1),
+                Integer.getInteger("chess.engine.hash", DEFAULT_HASH_MEGABYTES));
+    }
+
+    // Not while a search is running
+    public void setThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (helpers != null) helpers.shutdownNow();
+        searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(table);
+        }
+        helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, task -> {
+            Thread thread = new Thread(task, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int threads() {
+        return searches.length;
+    }
+
+    public TranspositionTable table() {
+        return table;
+    }
+
+    public Search.Result search(Position position, Search.Limits limits, Search.Listener listener) {
+        return search(position, limits, listener, ticket());
+    }
+
+    // For a search about to be queued; see Search.ticket
+    public long ticket() {
+        return searches[0].ticket();
+    }
+
+    // Under a ticket from ticket(); the helpers are only ever stopped by this search, and take theirs now
+    public Search.Result search(Position position, Search.Limits limits, Search.Listener listener, long ticket) {
+        table.newSearch();
+        List<Future<?>> running = new ArrayList<>();
+        Search.Limits helperLimits = Search.Limits.infinite().withDepth(limits.depth);
+        for (int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            Position copy = position.copy();
+            int index = i;
+            long helperTicket = helper.ticket();
+            running.add(helpers.submit(() -> helper.search(copy, helperLimits, null, helperTicket, index)));
+        }
+        Search.Listener reporting = listener == null ? null : result -> listener.onIteration(result.withNodes(nodes()));
+        Search.Result result;
+        try {
+            result = searches[0].search(position, limits, reporting, ticket, 0);
+        } finally {
+            for (int i = 1; i < searches.length; i++) {
+                searches[i].stop();
+            }
+            for (Future<?> helper : running) {
+                try {
+                    helper.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        return result == null ? null : result.withNodes(nodes());
+    }
+
+    // From any thread; the reporting thread returns its result as soon as it notices
+    public void stop() {
+        for (Search search : searches) {
+            search.stop();
+        }
+    }
+
+    // Across all threads; approximate while a search runs
+    public long nodes() {
+        long total = 0;
+        for (Search search : searches) {
+            total += search.nodes();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Console spectator for a {@link GameServer} game: prints the position it
+ * joins at, then every move and result as it happens.
+ *
+ * Usage: java Spectator [host] [port] [game, 0 for the newest]
+ */
+public final class Spectator {
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+    private Position position = Position.startPosition();
+    private int lastSequence;
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+        int game = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        new Spectator().watch(host, port, game);
+    }
+
+    private void watch(String host, int port, int game) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            ByteBuffer frame = ByteBuffer.allocate(Protocol.MAX_FRAME);
+            Protocol.putWatch(frame, game);
+            send(out, frame);
+            // The server drops sessions that stay silent, so keep pinging
+            Thread pinger = new Thread(() -> ping(out), "spectator-ping");
+            pinger.setDaemon(true);
+            pinger.start();
+            while (true) {
+                int length = in.readUnsignedShort();
+                if (length == 0 || length > Protocol.MAX_FRAME - Protocol.LENGTH_BYTES) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                frame.clear();
+                in.readFully(frame.array(), 0, length);
+                Protocol.checkFrame(frame, 0, length);
+                onFrame(frame, length);
+            }
+        }
+    }
+
+    private void onFrame(ByteBuffer frame, int length) {
+        int type = Protocol.type(frame, 0);
+        if (type == Protocol.POSITION) {
+            lastSequence = Protocol.sequence(frame, 0);
+            position = Position.fromFen(Protocol.fen(frame, 0, length));
+            System.out.println("Position: " + position.toFen());
+            return;
+        }
+        if (!Protocol.isGameEvent(type)) return;
+        int sequence = Protocol.sequence(frame, 0);
+        if (!GameLog.follows(sequence, type, lastSequence)) return;
+        lastSequence = sequence;
+        switch (type) {
+            case Protocol.MOVE:
+                int wireMove = Protocol.move(frame, 0);
+                int move = Protocol.resolve(position, wireMove, moveBuffer);
+                System.out.println(position.fullmoveNumber() + (position.sideToMove() == Piece.WHITE ? ". " : "... ")
+                        + Bitboards.squareName(Protocol.wireFrom(wireMove)) + Bitboards.squareName(Protocol.wireTo(wireMove)));
+                if (move != Move.NONE) position.makeMove(move);
+                break;
+            case Protocol.RESIGN:
+                System.out.println((Protocol.resignColor(frame, 0) == Piece.WHITE ? "White" : "Black") + " resigns");
+                break;
+            case Protocol.RESULT:
+                System.out.println("Result: " + Protocol.status(frame, 0));
+                break;
+            case Protocol.NEW_GAME:
+                position = Position.startPosition();
+                System.out.println("New game");
+                break;
+        }
+    }
+
+    private static void ping(DataOutputStream out) {
+        ByteBuffer frame = ByteBuffer.allocate(Protocol.FIXED_FRAME_BYTES);
+        try {
+            while (true) {
+                Thread.sleep(NetworkConnection.DEFAULT_HEARTBEAT_MILLIS);
+                frame.clear();
+                Protocol.putPing(frame, System.nanoTime());
+                send(out, frame);
+            }
+        } catch (IOException | InterruptedException e) {
+            // The reader notices the closed socket
+        }
+    }
+
+    private static void send(DataOutputStream out, ByteBuffer frame) throws IOException {
+        synchronized (out) {
+            out.write(frame.array(), 0, frame.position());
+            out.flush();
+        }
+    }
+}
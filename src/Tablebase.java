@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Probes the endgame tables written by {@link TablebaseGenerator}: king and
+ * one piece against a lone king. Each file is memory-mapped, so a probe is
+ * an index computation and one byte read.
+ *
+ * A table holds one byte per (side to move, strong king, weak king, piece)
+ * with the strong side as White; Black's endgames are probed by mirroring
+ * the ranks. A byte is 0 for a draw (or an impossible position), otherwise
+ * the distance to mate in plies plus one: odd values are losses for the
+ * side to move, even values wins. Castling and the fifty-move rule are not
+ * modelled; positions with castling rights are not probed.
+ *
+ * Files are read from the directory named by -Dchess.tablebases.
+ */
+public final class Tablebase {
+    public static final Tablebase NONE = new Tablebase(new MappedByteBuffer[Piece.KING]);
+
+    public static final int UNKNOWN = -1;
+    public static final int DRAW = 0;
+    static final int PIECES = 3;
+    static final int SIZE = 2 * 64 * 64 * 64;
+    static final int HEADER_BYTES = 16;
+    static final byte[] MAGIC = "CTB1".getBytes(StandardCharsets.US_ASCII);
+    // The endgames that can be generated, by the type of the extra piece
+    static final int[] TYPES = {Piece.QUEEN, Piece.ROOK, Piece.PAWN};
+
+    private final MappedByteBuffer[] tables;
+
+    private Tablebase(MappedByteBuffer[] tables) {
+        this.tables = tables;
+    }
+
+    private static final class Shared {
+        static final Tablebase INSTANCE = load();
+
+        private static Tablebase load() {
+            String dir = System.getProperty("chess.tablebases");
+            if (dir == null) return NONE;
+            try {
+                return open(Path.of(dir));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Playing without tablebases: " + e.getMessage());
+                return NONE;
+            }
+        }
+    }
+
+    // Mapped once per process and shared by every search
+    public static Tablebase configured() {
+        return Shared.INSTANCE;
+    }
+
+    // Maps whichever tables the directory holds
+    public static Tablebase open(Path dir) throws IOException {
+        MappedByteBuffer[] tables = new MappedByteBuffer[Piece.KING];
+        for (int type : TYPES) {
+            Path file = dir.resolve(name(type) + ".tb");
+            if (!Files.exists(file)) continue;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() != HEADER_BYTES + SIZE) throw new IllegalArgumentException(file + " has the wrong size");
+                MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                byte[] magic = new byte[MAGIC.length];
+                table.get(0, magic);
+                if (!Arrays.equals(magic, MAGIC)) throw new IllegalArgumentException(file + " is not a tablebase");
+                tables[type] = table;
+            }
+        }
+        return new Tablebase(tables);
+    }
+
+    static String name(int type) {
+        return "K" + Piece.typeChar(type) + "K";
+    }
+
+    static void write(Path file, byte[] values, int longest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + SIZE);
+        buffer.put(MAGIC).putInt(SIZE).putInt(longest).putInt(0).put(values);
+        Files.write(file, buffer.array());
+    }
+
+    static int index(int sideToMove, int strongKing, int weakKing, int square) {
+        return ((sideToMove * 64 + strongKing) * 64 + weakKing) * 64 + square;
+    }
+
+    // Distance to mate for the side to move as stored, DRAW, or UNKNOWN when no table covers the position
+    public int probe(Position pos) {
+        long occupied = pos.occupied();
+        if (Long.bitCount(occupied) != PIECES || pos.castlingRights() != 0) return UNKNOWN;
+        long kings = pos.pieces(Piece.WHITE, Piece.KING) | pos.pieces(Piece.BLACK, Piece.KING);
+        long extra = occupied & ~kings;
+        if (extra == 0) return UNKNOWN;
+        int square = Long.numberOfTrailingZeros(extra);
+        int piece = pos.pieceAt(square);
+        MappedByteBuffer table = tables[Piece.type(piece)];
+        if (table == null) return UNKNOWN;
+        int strong = Piece.color(piece);
+        // Flipping the ranks turns Black's endgame into White's
+        int flip = strong == Piece.WHITE ? 0 : 56;
+        int index = index(pos.sideToMove() ^ strong, pos.kingSquare(strong) ^ flip,
+                pos.kingSquare(strong ^ 1) ^ flip, square ^ flip);
+        return table.get(HEADER_BYTES + index) & 0xFF;
+    }
+
+    public static boolean isWin(int value) {
+        return value != DRAW && (value & 1) == 0;
+    }
+
+    public static int plies(int value) {
+        return value - 1;
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the {@link Tablebase} files for KQK, KRK and KPK by retrograde
+ * analysis. Every position's successors are generated once; then round n
+ * marks as won in n plies each position with a successor lost in n - 1,
+ * and as lost each position all of whose successors are won and the
+ * longest of them in n - 1. Rounds run until nothing changes, and what is
+ * left undecided is drawn. KPK is built last, since its promotions lead
+ * into KQK and KRK.
+ *
+ * Both passes over the 524,288 positions of a table are split across a
+ * fork-join pool. Positions are only written in the round that decides
+ * them, and reads ignore values decided in the current round, so the
+ * threads share one array without locking.
+ *
+ * Usage: java TablebaseGenerator [-t threads] [directory]
+ */
+public final class TablebaseGenerator {
+    // Positions handled by one fork-join leaf
+    private static final int CHUNK = 4096;
+    private static final int ILLEGAL = -1;
+
+    private interface Range {
+        void run(int from, int to);
+    }
+
+    private static final class Split extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Range range;
+        private final int from, to;
+
+        Split(Range range, int from, int to) {
+            this.range = range;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                range.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Split(range, from, mid), new Split(range, mid, to));
+        }
+    }
+
+    private final ForkJoinPool pool;
+    // Finished tables by piece type, for promotions
+    private final byte[][] done = new byte[Piece.KING][];
+
+    TablebaseGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path dir = Path.of("tablebases");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-t": threads = Integer.parseInt(args[++i]); break;
+                default: dir = Path.of(args[i]); break;
+            }
+        }
+        Files.createDirectories(dir);
+        TablebaseGenerator generator = new TablebaseGenerator(new ForkJoinPool(threads));
+        System.out.printf("%d threads, writing to %s%n", threads, dir);
+        for (int type : Tablebase.TYPES) {
+            long start = System.nanoTime();
+            byte[] values = generator.generate(type);
+            int longest = longest(values);
+            Tablebase.write(dir.resolve(Tablebase.name(type) + ".tb"), values, longest);
+            int wins = 0, losses = 0, draws = 0;
+            for (byte value : values) {
+                if (value == Tablebase.DRAW) draws++;
+                else if (Tablebase.isWin(value & 0xFF)) wins++;
+                else losses++;
+            }
+            System.out.printf("%s: %8d won %8d lost %8d drawn or impossible, longest mate %d plies, %.2f s%n",
+                    Tablebase.name(type), wins, losses, draws, longest, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    byte[] generate(int type) {
+        int piece = Piece.make(Piece.WHITE, type);
+        byte[] values = new byte[Tablebase.SIZE];
+
+        // Pass 1: legality, mates and successor counts
+        int[] counts = new int[Tablebase.SIZE];
+        pool.invoke(new Split((from, to) -> {
+            Position pos = new Position();
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            for (int index = from; index < to; index++) {
+                if (!setUp(pos, piece, index)) {
+                    counts[index] = ILLEGAL;
+                    continue;
+                }
+                int count = MoveGenerator.generateLegal(pos, moves);
+                counts[index] = count;
+                // Mated now: lost in 0 plies. Stalemate has no successors and stays drawn
+                if (count == 0 && pos.isInCheck(pos.sideToMove())) values[index] = 1;
+                clear(pos);
+            }
+        }, 0, Tablebase.SIZE));
+
+        int[] offsets = new int[Tablebase.SIZE + 1];
+        for (int index = 0; index < Tablebase.SIZE; index++) {
+            offsets[index + 1] = offsets[index] + Math.max(counts[index], 0);
+        }
+
+        // Pass 2: successors, as an index into this table or, when negative, a value decided elsewhere
+        int[] children = new int[offsets[Tablebase.SIZE]];
+        AtomicInteger horizon = new AtomicInteger();
+        pool.invoke(new Split((from, to) -> {
+            Position pos = new Position();
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int furthest = 0;
+            for (int index = from; index < to; index++) {
+                if (counts[index] <= 0) continue;
+                setUp(pos, piece, index);
+                int count = MoveGenerator.generateLegal(pos, moves);
+                for (int i = 0; i < count; i++) {
+                    pos.makeMove(moves[i]);
+                    int child = successor(pos, type);
+                    if (child < 0) furthest = Math.max(furthest, Tablebase.plies(-1 - child));
+                    children[offsets[index] + i] = child;
+                    pos.unmakeMove(moves[i]);
+                }
+                clear(pos);
+            }
+            horizon.accumulateAndGet(furthest, Math::max);
+        }, 0, Tablebase.SIZE));
+
+        // Rounds: each decides the positions whose distance to mate is n plies
+        for (int n = 1; n < 255; n++) {
+            int plies = n;
+            AtomicInteger decided = new AtomicInteger();
+            pool.invoke(new Split((from, to) -> {
+                int found = 0;
+                for (int index = from; index < to; index++) {
+                    if (values[index] != 0 || counts[index] <= 0) continue;
+                    boolean winning = false, allLost = true;
+                    for (int i = offsets[index]; i < offsets[index + 1] && !winning; i++) {
+                        int child = children[i];
+                        int value = child >= 0 ? values[child] & 0xFF : -1 - child;
+                        if (value == Tablebase.DRAW || Tablebase.plies(value) >= plies) {
+                            allLost = false;
+                        } else if (!Tablebase.isWin(value)) {
+                            winning = true;
+                        }
+                    }
+                    if (winning || allLost) {
+                        values[index] = (byte) (plies + 1);
+                        found++;
+                    }
+                }
+                decided.addAndGet(found);
+            }, 0, Tablebase.SIZE));
+            if (decided.get() == 0 && n > horizon.get()) break;
+        }
+        done[type] = values;
+        return values;
+    }
+
+    // The value a move leads to: an index into this table, or -1 - value for another endgame
+    private int successor(Position pos, int type) {
+        if (Long.bitCount(pos.occupied()) < Tablebase.PIECES) return -1 - Tablebase.DRAW;
+        int square = pos.kingSquare(Piece.WHITE);
+        long extra = pos.occupancy(Piece.WHITE) & ~Bitboards.bit(square);
+        int at = Long.numberOfTrailingZeros(extra);
+        int now = Piece.type(pos.pieceAt(at));
+        int index = Tablebase.index(pos.sideToMove(), square, pos.kingSquare(Piece.BLACK), at);
+        if (now == type) return index;
+        // Promoted: a minor piece can't mate, a queen or rook is looked up in its finished table
+        return -1 - (done[now] == null ? Tablebase.DRAW : done[now][index] & 0xFF);
+    }
+
+    // Places the pieces for an index; false when the position can't occur
+    private static boolean setUp(Position pos, int piece, int index) {
+        int square = index & 63;
+        int weakKing = (index >>> 6) & 63;
+        int strongKing = (index >>> 12) & 63;
+        int sideToMove = index >>> 18;
+        if (square == weakKing || square == strongKing || weakKing == strongKing) return false;
+        if ((Bitboards.kingAttacks(strongKing) & Bitboards.bit(weakKing)) != 0) return false;
+        if (Piece.type(piece) == Piece.PAWN && (Bitboards.rank(square) == 0 || Bitboards.rank(square) == 7)) return false;
+        pos.putPiece(Piece.make(Piece.WHITE, Piece.KING), strongKing);
+        pos.putPiece(Piece.make(Piece.BLACK, Piece.KING), weakKing);
+        pos.putPiece(piece, square);
+        pos.setSideToMove(sideToMove);
+        // The side that just moved can't be in check
+        if (pos.isInCheck(sideToMove ^ 1)) {
+            clear(pos);
+            return false;
+        }
+        return true;
+    }
+
+    private static void clear(Position pos) {
+        long occupied = pos.occupied();
+        while (occupied != 0) {
+            pos.removePiece(Long.numberOfTrailingZeros(occupied));
+            occupied &= occupied - 1;
+        }
+    }
+
+    private static int longest(byte[] values) {
+        int longest = 0;
+        for (byte value : values) {
+            if (value != Tablebase.DRAW) longest = Math.max(longest, Tablebase.plies(value & 0xFF));
+        }
+        return longest;
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Base time per player plus an optional per-move increment. Fischer adds the
+ * increment after every move; Bronstein gives back the time used on the
+ * move, up to the increment, so a clock can never gain time.
+ */
+public final class TimeControl {
+    public enum Increment {
+        NONE, FISCHER, BRONSTEIN
+    }
+
+    public static final TimeControl DEFAULT = new TimeControl(Game.DEFAULT_TIME_SECONDS * 1000L, 0, Increment.NONE);
+
+    private final long baseMillis;
+    private final long incrementMillis;
+    private final Increment increment;
+
+    public TimeControl(long baseMillis, long incrementMillis, Increment increment) {
+        if (baseMillis <= 0 || incrementMillis < 0) throw new IllegalArgumentException("Bad time control");
+        this.baseMillis = baseMillis;
+        this.incrementMillis = increment == Increment.NONE ? 0 : incrementMillis;
+        this.increment = incrementMillis == 0 ? Increment.NONE : increment;
+    }
+
+    /**
+     * "minutes" or "minutes+seconds" for a Fischer increment, "minutes d seconds"
+     * (e.g. "5d3") for Bronstein. Minutes may be fractional.
+     */
+    public static TimeControl parse(String text) {
+        String spec = text.trim().toLowerCase();
+        int split = Math.max(spec.indexOf('+'), spec.indexOf('d'));
+        try {
+            long base = Math.round(Double.parseDouble(split < 0 ? spec : spec.substring(0, split)) * 60_000);
+            if (split < 0) return new TimeControl(base, 0, Increment.NONE);
+            long inc = Math.round(Double.parseDouble(spec.substring(split + 1)) * 1000);
+            return new TimeControl(base, inc, spec.charAt(split) == '+' ? Increment.FISCHER : Increment.BRONSTEIN);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad time control: " + text);
+        }
+    }
+
+    // -Dchess.time=10+5 and the like; DEFAULT when unset
+    public static TimeControl configured() {
+        String spec = System.getProperty("chess.time");
+        return spec == null ? DEFAULT : parse(spec);
+    }
+
+    public long baseMillis() {
+        return baseMillis;
+    }
+
+    public long incrementMillis() {
+        return incrementMillis;
+    }
+
+    public Increment increment() {
+        return increment;
+    }
+
+    @Override
+    public String toString() {
+        String minutes = format(baseMillis, 60_000);
+        switch (increment) {
+            case FISCHER: return minutes + "+" + format(incrementMillis, 1000);
+            case BRONSTEIN: return minutes + "d" + format(incrementMillis, 1000);
+            default: return minutes;
+        }
+    }
+
+    private static String format(long millis, long unit) {
+        return millis % unit == 0 ? String.valueOf(millis / unit) : String.valueOf((double) millis / unit);
+    }
+}
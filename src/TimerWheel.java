@@ -0,0 +1,152 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical hashed timer wheel: one thread serves any number of
+ * deadlines at a fixed tick. Four levels of 64 slots cover 64^4 ticks
+ * (about 46 hours at 10 ms); a timeout is filed on the coarsest level that
+ * still separates it from now and cascades down as its slot comes round,
+ * so scheduling, cancelling and expiring are all O(1) per timeout.
+ *
+ * Deadlines fire at most one tick late and never early. Tasks run on the
+ * wheel thread and must be short. Scheduling and cancelling are safe from
+ * any thread: new timeouts are handed over through a queue and cancelled
+ * ones are dropped when their slot is next visited.
+ */
+public final class TimerWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    public static final class Timeout {
+        private final long deadlineNanos;
+        private final Runnable task;
+        private long tick;
+        private Timeout next;
+        private volatile boolean cancelled;
+
+        private Timeout(long deadlineNanos, Runnable task) {
+            this.deadlineNanos = deadlineNanos;
+            this.task = task;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public long deadlineNanos() {
+            return deadlineNanos;
+        }
+    }
+
+    private final long tickNanos;
+    private final Timeout[][] wheel = new Timeout[LEVELS][SLOTS];
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private final long startNanos;
+    private long currentTick;
+    private volatile boolean running = true;
+
+    public TimerWheel(long tickMillis, String name) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.startNanos = System.nanoTime();
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Runs task on the wheel thread once System.nanoTime() has passed deadlineNanos
+    public Timeout schedule(long deadlineNanos, Runnable task) {
+        Timeout timeout = new Timeout(deadlineNanos, task);
+        added.add(timeout);
+        return timeout;
+    }
+
+    public Timeout scheduleAfter(long delay, TimeUnit unit, Runnable task) {
+        return schedule(System.nanoTime() + unit.toNanos(delay), task);
+    }
+
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        while (running) {
+            long wake = startNanos + (currentTick + 1) * tickNanos;
+            long wait;
+            while (running && (wait = wake - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Timeout timeout;
+            while ((timeout = added.poll()) != null) {
+                if (timeout.cancelled) continue;
+                // Round up so a deadline is never reported early
+                long tick = Math.floorDiv(timeout.deadlineNanos - startNanos + tickNanos - 1, tickNanos);
+                timeout.tick = Math.max(tick, currentTick + 1);
+                file(timeout);
+            }
+            advance();
+        }
+    }
+
+    // Wheel thread only
+    private void file(Timeout timeout) {
+        long delta = Math.min(timeout.tick - currentTick, SPAN - 1);
+        int level = 0;
+        while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        // Beyond the span the timeout parks in the top level and is refiled when that slot cascades
+        long tick = currentTick + delta;
+        int slot = (int) (tick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+        timeout.next = wheel[level][slot];
+        wheel[level][slot] = timeout;
+    }
+
+    private void advance() {
+        currentTick++;
+        // When the lower levels wrap, the next slot of each coarser level is spread back down
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) break;
+            int slot = (int) (currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+            Timeout timeout = wheel[level][slot];
+            wheel[level][slot] = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (!timeout.cancelled) file(timeout);
+                timeout = next;
+            }
+        }
+        int slot = (int) currentTick & (SLOTS - 1);
+        Timeout timeout = wheel[0][slot];
+        wheel[0][slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.next = null;
+            if (!timeout.cancelled) {
+                if (timeout.tick <= currentTick) {
+                    expire(timeout);
+                } else {
+                    file(timeout);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void expire(Timeout timeout) {
+        try {
+            timeout.task.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
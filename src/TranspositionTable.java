@@ -0,0 +1,132 @@
+/**
+ * Fixed-size, lock-free transposition table keyed by Zobrist hash.
+ *
+ * Each entry is two longs: the packed data and {@code key ^ data}. Readers
+ * accept an entry only if the xor reproduces the probed key, so a torn or
+ * concurrently overwritten entry is rejected rather than misread. Entries
+ * are grouped in buckets of four; a store replaces the same key if present,
+ * otherwise the shallowest entry, counting entries from older searches as
+ * shallower than they are.
+ *
+ * Data layout: bits 0-15 move, 16-31 score, 32-47 static eval,
+ * 48-55 depth, 56-57 bound, 58-63 search age.
+ */
+public final class TranspositionTable {
+    public static final int BOUND_NONE = 0;
+    public static final int BOUND_UPPER = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_EXACT = 3;
+
+    private static final int BUCKET_SIZE = 4;
+    private static final int ENTRY_BYTES = 16;
+
+    private long[] keys;
+    private long[] data;
+    private int bucketMask;
+    private int age;
+
+    public TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    // Rounds the budget down to a power-of-two number of buckets
+    public void resize(int megabytes) {
+        long entries = Math.max(BUCKET_SIZE, (long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        long buckets = Long.highestOneBit(Math.min(entries / BUCKET_SIZE, 1 << 26));
+        keys = new long[(int) buckets * BUCKET_SIZE];
+        data = new long[(int) buckets * BUCKET_SIZE];
+        bucketMask = (int) buckets - 1;
+        age = 0;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(keys, 0);
+        java.util.Arrays.fill(data, 0);
+        age = 0;
+    }
+
+    public int sizeMegabytes() {
+        return (int) ((long) keys.length * ENTRY_BYTES / (1024 * 1024));
+    }
+
+    // Call once per search so entries from earlier searches become cheap to replace
+    public void newSearch() {
+        age = (age + 1) & 63;
+    }
+
+    // Packed entry data, or 0 if the key is not present
+    public long probe(long key) {
+        int base = bucket(key);
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            long d = data[i];
+            if ((keys[i] ^ d) == key && d != 0) return d;
+        }
+        return 0;
+    }
+
+    public void store(long key, int move, int score, int eval, int depth, int bound) {
+        int base = bucket(key);
+        int target = base;
+        int worst = Integer.MAX_VALUE;
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            long d = data[i];
+            if ((keys[i] ^ d) == key || d == 0) {
+                // Keep the old move if the new result has none
+                if (move == Move.NONE && d != 0) move = move(d);
+                target = i;
+                break;
+            }
+            int value = depth(d) - 4 * ((age - age(d)) & 63);
+            if (value < worst) {
+                worst = value;
+                target = i;
+            }
+        }
+        long d = (move & 0xFFFFL)
+                | ((score & 0xFFFFL) << 16)
+                | ((eval & 0xFFFFL) << 32)
+                | ((long) Math.max(0, Math.min(depth, 255)) << 48)
+                | ((long) bound << 56)
+                | ((long) age << 58);
+        data[target] = d;
+        keys[target] = key ^ d;
+    }
+
+    // Permille of sampled entries written during the current search
+    public int hashfull() {
+        int used = 0;
+        int sample = Math.min(1000, data.length);
+        for (int i = 0; i < sample; i++) {
+            if (data[i] != 0 && age(data[i]) == age) used++;
+        }
+        return used * 1000 / sample;
+    }
+
+    private int bucket(long key) {
+        return ((int) (key >>> 32) & bucketMask) * BUCKET_SIZE;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 16);
+    }
+
+    public static int eval(long data) {
+        return (short) (data >>> 32);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 48) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> 56) & 3;
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> 58) & 63;
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The engine as a UCI engine on stdin/stdout, without JavaFX or the
+ * network: for tournament managers, regression runs and benchmarks.
+ *
+ * Supports uci, isready, ucinewgame, setoption (Threads, Hash), position
+ * startpos|fen ... [moves ...], go [depth|movetime|wtime|btime|winc|binc|
+ * movestogo|infinite|perft], stop, quit, and bench [depth], which searches
+ * the {@link Bench} positions and reports total nodes and nodes per second.
+ * With -Dchess.book set, timed searches answer from the {@link OpeningBook}
+ * while the position is in it (option OwnBook).
+ *
+ * Usage: java Uci
+ */
+public final class Uci {
+    private static final int BENCH_DEPTH = 8;
+
+    private final PrintStream out;
+    private final ExecutorService searchThread = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "uci-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final SmpSearch search = SmpSearch.configured();
+    private final OpeningBook book = OpeningBook.configured();
+    private boolean ownBook = book != OpeningBook.NONE;
+    private Position position = Position.startPosition();
+    private Future<?> running;
+    // Holds back the bestmove of a go infinite until stop, however early its search ends
+    private CountDownLatch held;
+
+    Uci(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        PrintStream out = new PrintStream(System.out, true, StandardCharsets.UTF_8);
+        Uci uci = new Uci(out);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        if (args.length > 0) {
+            // Commands on the command line, e.g. "java Uci bench 10"
+            uci.handle(String.join(" ", args));
+            uci.handle("quit");
+            return;
+        }
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!uci.handle(line.trim())) break;
+        }
+        uci.stopSearch();
+    }
+
+    // False once the engine should exit
+    boolean handle(String line) {
+        String[] tokens = line.split("\\s+");
+        switch (tokens[0]) {
+            case "uci":
+                out.println("id name OnlineChess");
+                out.println("id author Team SSEHC[-1]");
+                out.println("option name Threads type spin default " + search.threads() + " min 1 max 256");
+                out.println("option name Hash type spin default " + search.table().sizeMegabytes() + " min 1 max 4096");
+                out.println("option name OwnBook type check default " + ownBook);
+                out.println("uciok");
+                break;
+            case "isready":
+                out.println("readyok");
+                break;
+            case "ucinewgame":
+                awaitSearch();
+                search.table().clear();
+                break;
+            case "setoption":
+                awaitSearch();
+                setOption(tokens);
+                break;
+            case "position":
+                awaitSearch();
+                setPosition(tokens);
+                break;
+            case "go":
+                awaitSearch();
+                go(tokens);
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "bench":
+                awaitSearch();
+                try {
+                    bench(tokens.length > 1 ? Integer.parseInt(tokens[1]) : BENCH_DEPTH);
+                } catch (NumberFormatException e) {
+                    out.println("info string bad value " + tokens[1]);
+                }
+                break;
+            case "d":
+                out.println(position.toFen());
+                break;
+            case "quit":
+                stopSearch();
+                return false;
+            default:
+                if (!line.isEmpty()) out.println("info string unknown command " + tokens[0]);
+                break;
+        }
+        return true;
+    }
+
+    private void setOption(String[] tokens) {
+        String name = null, value = null;
+        for (int i = 1; i < tokens.length; i++) {
+            if (tokens[i].equals("name") && i + 1 < tokens.length) name = tokens[i + 1];
+            if (tokens[i].equals("value") && i + 1 < tokens.length) value = tokens[i + 1];
+        }
+        if (name == null || value == null) return;
+        try {
+            if (name.equalsIgnoreCase("Threads")) {
+                search.setThreads(Integer.parseInt(value));
+            } else if (name.equalsIgnoreCase("Hash")) {
+                search.table().resize(Integer.parseInt(value));
+            } else if (name.equalsIgnoreCase("OwnBook")) {
+                ownBook = Boolean.parseBoolean(value);
+            } else {
+                out.println("info string unknown option " + name);
+            }
+        } catch (NumberFormatException e) {
+            out.println("info string bad value " + value);
+        }
+    }
+
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        Position next;
+        if (i < tokens.length && tokens[i].equals("startpos")) {
+            next = Position.startPosition();
+            i++;
+        } else if (i < tokens.length && tokens[i].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            for (i++; i < tokens.length && !tokens[i].equals("moves"); i++) {
+                fen.append(tokens[i]).append(' ');
+            }
+            try {
+                next = Position.fromFen(fen.toString());
+            } catch (RuntimeException e) {
+                out.println("info string bad fen " + fen.toString().trim());
+                return;
+            }
+        } else {
+            return;
+        }
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                int move = parseMove(next, tokens[i]);
+                if (move == Move.NONE) {
+                    out.println("info string illegal move " + tokens[i]);
+                    break;
+                }
+                next.makeMove(move);
+            }
+        }
+        position = next;
+    }
+
+    static int parseMove(Position position, String uci) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(position, moves);
+        for (int i = 0; i < count; i++) {
+            if (Move.toUci(moves[i]).equals(uci)) return moves[i];
+        }
+        return Move.NONE;
+    }
+
+    private void go(String[] tokens) {
+        int depth = 0;
+        long moveTime = 0, whiteTime = 0, blackTime = 0, whiteIncrement = 0, blackIncrement = 0;
+        int movesToGo = 0;
+        boolean infinite = false;
+        for (int i = 1; i < tokens.length; i++) {
+            String value = i + 1 < tokens.length ? tokens[i + 1] : "0";
+            try {
+                switch (tokens[i]) {
+                    case "depth": depth = Integer.parseInt(value); i++; break;
+                    case "movetime": moveTime = Long.parseLong(value); i++; break;
+                    case "wtime": whiteTime = Long.parseLong(value); i++; break;
+                    case "btime": blackTime = Long.parseLong(value); i++; break;
+                    case "winc": whiteIncrement = Long.parseLong(value); i++; break;
+                    case "binc": blackIncrement = Long.parseLong(value); i++; break;
+                    case "movestogo": movesToGo = Integer.parseInt(value); i++; break;
+                    case "infinite": infinite = true; break;
+                    case "perft":
+                        perft(Integer.parseInt(value));
+                        return;
+                    default: break;
+                }
+            } catch (NumberFormatException e) {
+                out.println("info string bad value " + value);
+                return;
+            }
+        }
+        boolean white = position.sideToMove() == Piece.WHITE;
+        long remaining = white ? whiteTime : blackTime;
+        Search.Limits limits;
+        if (infinite) {
+            limits = Search.Limits.infinite();
+        } else if (moveTime > 0) {
+            limits = Search.Limits.moveTime(moveTime);
+        } else if (remaining > 0) {
+            limits = Search.Limits.clock(remaining, white ? whiteIncrement : blackIncrement, movesToGo);
+        } else if (depth > 0) {
+            limits = Search.Limits.depth(depth);
+        } else {
+            limits = Search.Limits.infinite();
+        }
+        if (depth > 0) limits.withDepth(depth);
+
+        // Analysis and fixed-depth runs want a search, not a book move
+        int bookMove = ownBook && !infinite && depth == 0 ? book.pick(position) : Move.NONE;
+        if (bookMove != Move.NONE) {
+            out.println("info string book move");
+            out.println("bestmove " + Move.toUci(bookMove));
+            return;
+        }
+
+        Position root = position.copy();
+        long ticket = search.ticket();
+        CountDownLatch hold = new CountDownLatch(infinite ? 1 : 0);
+        held = hold;
+        running = searchThread.submit(() -> {
+            Search.Result result = search.search(root, limits, this::info, ticket);
+            try {
+                hold.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.println("bestmove " + Move.toUci(result == null ? Move.NONE : result.bestMove()));
+        });
+    }
+
+    private void info(Search.Result result) {
+        long millis = result.nanos / 1_000_000;
+        String score = result.isMate() ? "mate " + result.mateIn() : "cp " + result.score;
+        out.println("info depth " + result.depth + " score " + score + " nodes " + result.nodes
+                + " nps " + result.nodesPerSecond() + " time " + millis
+                + " hashfull " + search.table().hashfull() + " pv " + result.pvString());
+    }
+
+    // Ends a running go and waits for its bestmove, so output stays in order
+    private void stopSearch() {
+        if (running == null) return;
+        search.stop();
+        awaitSearch();
+    }
+
+    // Lets a running go finish on its own limits; GUIs send stop first when they can't wait. A go infinite has none and is stopped
+    private void awaitSearch() {
+        if (running == null) return;
+        if (held.getCount() > 0) search.stop();
+        held.countDown();
+        try {
+            running.get();
+        } catch (Exception e) {
+            out.println("info string search failed: " + e);
+        }
+        running = null;
+    }
+
+    private void perft(int depth) {
+        if (depth < 0 || depth >= Perft.MAX_DEPTH) {
+            out.println("info string bad perft depth " + depth);
+            return;
+        }
+        long start = System.nanoTime();
+        long nodes = new Perft().perft(position.copy(), depth);
+        long nanos = System.nanoTime() - start;
+        out.println("Nodes searched: " + nodes);
+        out.println("Nodes/second: " + (nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos));
+    }
+
+    private void bench(int depth) {
+        long nodes = 0, nanos = 0;
+        for (String fen : Bench.POSITIONS) {
+            search.table().clear();
+            long start = System.nanoTime();
+            Search.Result result = search.search(Position.fromFen(fen), Search.Limits.depth(depth), null);
+            nanos += System.nanoTime() - start;
+            nodes += result.nodes;
+            out.println("info string " + fen + " bestmove " + Move.toUci(result.bestMove()) + " " + result);
+        }
+        out.println("===========================");
+        out.println("Total time (ms) : " + nanos / 1_000_000);
+        out.println("Nodes searched  : " + nodes);
+        out.println("Nodes/second    : " + (nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos));
+    }
+}
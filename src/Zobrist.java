@@ -0,0 +1,53 @@
+/**
+ * Random keys for 64-bit Zobrist hashing. Generated from a fixed SplitMix64
+ * seed so keys, and anything persisted by key, are stable across runs.
+ */
+public final class Zobrist {
+    static final long[][] PIECE_SQUARE = new long[12][64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EP_FILE = new long[8];
+    static final long SIDE;
+
+    static {
+        long[] state = {0x9E3779B97F4A7C15L};
+        for (int piece = 0; piece < 12; piece++) {
+            for (int sq = 0; sq < 64; sq++) {
+                PIECE_SQUARE[piece][sq] = next(state);
+            }
+        }
+        // Castling keys combine per-right keys, so any set of rights xors consistently
+        long[] rights = {next(state), next(state), next(state), next(state)};
+        for (int mask = 0; mask < 16; mask++) {
+            for (int bit = 0; bit < 4; bit++) {
+                if ((mask & (1 << bit)) != 0) CASTLING[mask] ^= rights[bit];
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            EP_FILE[file] = next(state);
+        }
+        SIDE = next(state);
+    }
+
+    private Zobrist() {
+    }
+
+    private static long next(long[] state) {
+        long z = (state[0] += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Full recomputation, used to seed a position and to check incremental updates
+    public static long compute(Position pos) {
+        long key = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = pos.pieceAt(sq);
+            if (piece != Piece.NONE) key ^= PIECE_SQUARE[piece][sq];
+        }
+        key ^= CASTLING[pos.castlingRights()];
+        key ^= pos.epKey();
+        if (pos.sideToMove() == Piece.BLACK) key ^= SIDE;
+        return key;
+    }
+}